@@ -0,0 +1,121 @@
+package nnet.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nnet.LayeredNet;
+import nnet.MyBackpropagation;
+
+/**
+ * JMH version of {@link Benchmarks}: the same operations on the same net
+ * shapes and storage modes. Run with "gradle jmh", which adds the GC profiler
+ * for allocated bytes per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayeredNetBenchmark {
+
+	@Setup
+	public void setUp() {
+		String[] sizes = shape.split("-");
+		int[] layers = new int[sizes.length];
+		neuronCount = 0;
+		for (int i = 0; i < layers.length; i++) {
+			layers[i] = Integer.parseInt(sizes[i]);
+			neuronCount += layers[i];
+		}
+		net = new LayeredNet(neuronCount, layers, 0, storage.equals("dense") ? LayeredNet.DENSE : LayeredNet.MATRIX);
+		Random random = new Random(1);
+		for (int i = 0; i < neuronCount; i++) {
+			int[] out = net.getOutputNeuronsFor(i);
+			for (int j = 0; j < out.length; j++) {
+				net.setWeight(i, out[j], (random.nextFloat() - 0.5f) * 0.1f);
+			}
+		}
+		input = new float[layers[0]];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = random.nextFloat();
+		}
+		target = new float[layers[layers.length - 1]];
+		target[0] = 1;
+		out = new float[target.length];
+		output = net.feedForward(input);
+	}
+
+	@Benchmark
+	public float[] output() {
+		return net.output(input);
+	}
+
+	@Benchmark
+	public float[] feedForward() {
+		return net.feedForward(input);
+	}
+
+	@Benchmark
+	public float[] outputInto() {
+		return net.output(input, out);
+	}
+
+	@Benchmark
+	public float[] backpropagate() {
+		return MyBackpropagation.backpropagate(net, target, output, 0.0001f);
+	}
+
+	@Benchmark
+	public float[] error() {
+		return MyBackpropagation.error(net, target, output);
+	}
+
+	@Benchmark
+	public int getInputNeuronsForAll() {
+		int sum = 0;
+		for (int i = 0; i < neuronCount; i++) {
+			sum += net.getInputNeuronsFor(i).length;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int getOutputNeuronsForAll() {
+		int sum = 0;
+		for (int i = 0; i < neuronCount; i++) {
+			sum += net.getOutputNeuronsFor(i).length;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int copy() {
+		return net.copy().neuronCount();
+	}
+
+	@Param({ "2-2-1", "196-100-10", "784-100-10", "784-256-128-10" })
+	public String shape;
+
+	@Param({ "matrix", "dense" })
+	public String storage;
+
+	private LayeredNet net;
+	private int neuronCount;
+	private float[] input;
+	private float[] target;
+	private float[] out;
+	private float[] output;
+}
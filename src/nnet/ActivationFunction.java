@@ -0,0 +1,27 @@
+package nnet;
+
+/**
+ * A neuron activation function together with its derivative.
+ * 
+ * See {@link ActivationFunctions} for the available implementations.
+ */
+public interface ActivationFunction {
+
+	/**
+	 * Returns the activation for given weighted input sum.
+	 */
+	float apply(float x);
+
+	/**
+	 * Replaces values[from] to values[to - 1] by their activations.
+	 */
+	void apply(float[] values, int from, int to);
+
+	/**
+	 * Returns the derivative at weighted input sum x, where y = apply(x).
+	 * Implementations use whichever of both is cheaper.
+	 */
+	float derivative(float x, float y);
+
+	String name();
+}
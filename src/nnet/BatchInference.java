@@ -0,0 +1,194 @@
+package nnet;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a {@link LayeredNet} for many inputs per call.
+ * 
+ * Inputs are processed in blocks of up to blockSize samples. For nets with
+ * DENSE storage each layer of a block is computed as one cache-blocked
+ * matrix-matrix product (see {@link Kernels#multiply}), so each weight is
+ * loaded once per block instead of once per sample; the results are the same
+ * as those of {@link LayeredNet#output(InferenceContext, float[], float[])}.
+ * Nets with other storage are evaluated sample by sample.
+ * 
+ * With more than one thread, large batches are split into one part per
+ * thread, each evaluated in working buffers of its own. The weights of the
+ * net must not change during a call. An instance must not be used by more
+ * than one thread at a time.
+ */
+public class BatchInference {
+
+	public BatchInference(LayeredNet net, int blockSize) {
+		this(net, blockSize, 1);
+	}
+
+	public BatchInference(LayeredNet net, int blockSize, int threads) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.net = net;
+		this.blockSize = blockSize;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		this.workspaces = new Workspace[threads];
+		for (int t = 0; t < threads; t++) {
+			workspaces[t] = new Workspace();
+		}
+	}
+
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	/**
+	 * Returns the output vectors for given input vectors.
+	 */
+	public float[][] output(float[][] inputs) {
+		float[][] outputs = new float[inputs.length][net.layerSize(net.layerCount() - 1)];
+		output(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Writes the output vectors for given input vectors into given output
+	 * vectors. Returns the output vectors.
+	 */
+	public float[][] output(float[][] inputs, float[][] outputs) {
+		run(inputs, null, outputs, null, inputs.length);
+		return outputs;
+	}
+
+	/**
+	 * Writes the output vectors for count input vectors, stored row by row in
+	 * inputs, row by row into outputs. Returns outputs.
+	 */
+	public float[] output(float[] inputs, int count, float[] outputs) {
+		int inputSize = net.layerSize(0);
+		int outputSize = net.layerSize(net.layerCount() - 1);
+		if (inputs.length < count * inputSize || outputs.length < count * outputSize) {
+			throw new IllegalArgumentException("Arrays too short for " + count + " samples");
+		}
+		run(null, inputs, null, outputs, count);
+		return outputs;
+	}
+
+	/**
+	 * Stops the worker threads, if any. The instance cannot be used for
+	 * parallel evaluation afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	private void run(float[][] inputs, float[] flatInputs, float[][] outputs, float[] flatOutputs, int count) {
+		int parts = pool == null || count < PARALLEL_THRESHOLD ? 1 : workspaces.length;
+		if (parts == 1) {
+			workspaces[0].evaluate(inputs, flatInputs, outputs, flatOutputs, 0, count);
+			return;
+		}
+		RecursiveAction[] tasks = new RecursiveAction[parts];
+		for (int t = 0; t < parts; t++) {
+			final Workspace workspace = workspaces[t];
+			final float[][] in = inputs;
+			final float[] flatIn = flatInputs;
+			final float[][] out = outputs;
+			final float[] flatOut = flatOutputs;
+			final int from = (int) ((long) count * t / parts);
+			final int to = (int) ((long) count * (t + 1) / parts);
+			tasks[t] = new RecursiveAction() {
+				@Override
+				protected void compute() {
+					workspace.evaluate(in, flatIn, out, flatOut, from, to);
+				}
+			};
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Working buffers of one thread: a block of activations per layer.
+	 */
+	private class Workspace {
+
+		void evaluate(float[][] inputs, float[] flatInputs, float[][] outputs, float[] flatOutputs, int from, int to) {
+			int last = net.layerCount() - 1;
+			int inputSize = net.layerSize(0);
+			int outputSize = net.layerSize(last);
+			if (!net.isDense()) {
+				if (context == null) {
+					context = net.newInferenceContext();
+					input = new float[inputSize];
+					output = new float[outputSize];
+				}
+				for (int s = from; s < to; s++) {
+					if (inputs != null) {
+						net.output(context, inputs[s], outputs[s]);
+					} else {
+						System.arraycopy(flatInputs, s * inputSize, input, 0, inputSize);
+						net.output(context, input, output);
+						System.arraycopy(output, 0, flatOutputs, s * outputSize, outputSize);
+					}
+				}
+				return;
+			}
+
+			if (activations == null) {
+				activations = new float[last + 1][];
+				for (int l = 0; l <= last; l++) {
+					activations[l] = new float[blockSize * net.layerSize(l)];
+				}
+			}
+			ActivationFunction function = net.getActivationFunction();
+			for (int start = from; start < to; start += blockSize) {
+				int rows = Math.min(blockSize, to - start);
+				if (inputs != null) {
+					for (int s = 0; s < rows; s++) {
+						System.arraycopy(inputs[start + s], 0, activations[0], s * inputSize, inputSize);
+					}
+				} else {
+					System.arraycopy(flatInputs, start * inputSize, activations[0], 0, rows * inputSize);
+				}
+				for (int l = 1; l <= last; l++) {
+					Kernels.multiply(activations[l - 1], rows, net.layerSize(l - 1), net.getLayerWeights(l - 1),
+							net.layerSize(l), activations[l]);
+					if (l < last) {
+						function.apply(activations[l], 0, rows * net.layerSize(l));
+					}
+				}
+				if (outputs != null) {
+					for (int s = 0; s < rows; s++) {
+						System.arraycopy(activations[last], s * outputSize, outputs[start + s], 0, outputSize);
+					}
+				} else {
+					System.arraycopy(activations[last], 0, flatOutputs, start * outputSize, rows * outputSize);
+				}
+			}
+		}
+
+		private float[][] activations;
+		private InferenceContext context;
+		private float[] input;
+		private float[] output;
+	}
+
+	/**
+	 * Number of samples below which a batch is not split among threads.
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	private final LayeredNet net;
+	private final int blockSize;
+	private final ForkJoinPool pool;
+	private final Workspace[] workspaces;
+}
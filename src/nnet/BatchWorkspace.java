@@ -0,0 +1,186 @@
+package nnet;
+
+import java.util.Arrays;
+
+/**
+ * Activation, error and gradient buffers for running forward and backward
+ * passes over a block of samples against the weights of a dense
+ * {@link LayeredNet}.
+ * 
+ * Errors are propagated the same way {@link MyBackpropagation} does it, i.e.
+ * as weighted sums of the errors of the next layer. The weights themselves are
+ * only read, so several workspaces may compute gradients against the same net
+ * at once.
+ */
+class BatchWorkspace {
+
+	BatchWorkspace(LayeredNet net, int capacity) {
+		if (!net.isDense()) {
+			throw new IllegalArgumentException("Batch training requires a LayeredNet with DENSE storage");
+		}
+		int layerCount = net.layerCount();
+		this.net = net;
+		this.capacity = capacity;
+		this.sizes = new int[layerCount];
+		this.activations = new float[layerCount][];
+		this.errors = new float[layerCount][];
+		this.gradients = new float[layerCount - 1][];
+		for (int l = 0; l < layerCount; l++) {
+			sizes[l] = net.layerSize(l);
+			activations[l] = new float[capacity * sizes[l]];
+			errors[l] = new float[capacity * sizes[l]];
+		}
+		for (int l = 0; l < layerCount - 1; l++) {
+			gradients[l] = new float[sizes[l] * sizes[l + 1]];
+		}
+	}
+
+	/**
+	 * Runs forward and backward passes for samples from (inclusive) to
+	 * (exclusive) and sets the gradient buffers to the summed weight deltas of
+	 * these samples. Returns the summed mean squared output error.
+	 * 
+	 * If an order is given, sample i is inputs[order[i]], otherwise inputs[i].
+	 */
+	float compute(float[][] inputs, float[][] targets, int[] order, int from, int to) {
+		int batch = to - from;
+		if (batch > capacity) {
+			throw new IllegalArgumentException("Batch of " + batch + " exceeds workspace capacity " + capacity);
+		}
+		int last = sizes.length - 1;
+		long start = System.nanoTime();
+
+		// forward pass
+		int inputSize = sizes[0];
+		for (int s = 0; s < batch; s++) {
+			int sample = order == null ? from + s : order[from + s];
+			System.arraycopy(inputs[sample], 0, activations[0], s * inputSize, inputSize);
+		}
+		for (int l = 1; l <= last; l++) {
+			Kernels.multiply(activations[l - 1], batch, sizes[l - 1], net.getLayerWeights(l - 1), sizes[l], activations[l]);
+			if (l < last) {
+				net.getActivationFunction().apply(activations[l], 0, batch * sizes[l]);
+			}
+		}
+
+		// output error
+		int outputSize = sizes[last];
+		float[] out = activations[last];
+		float[] errOut = errors[last];
+		float totalError = 0;
+		for (int s = 0; s < batch; s++) {
+			float[] target = targets[order == null ? from + s : order[from + s]];
+			for (int j = 0; j < outputSize; j++) {
+				float e = target[j] - out[s * outputSize + j];
+				errOut[s * outputSize + j] = e;
+				totalError += (e * e) / outputSize;
+			}
+		}
+
+		forwardNanos = System.nanoTime() - start;
+
+		// backward pass, skipping the input layer whose errors no update uses
+		for (int l = last - 1; l >= 1; l--) {
+			Kernels.multiplyTransposed(errors[l + 1], batch, sizes[l + 1], net.getLayerWeights(l), sizes[l], errors[l]);
+		}
+
+		clearGradients();
+		for (int l = 0; l < last; l++) {
+			Kernels.addTransposedProduct(activations[l], batch, sizes[l], errors[l + 1], sizes[l + 1], gradients[l]);
+		}
+
+		return totalError;
+	}
+
+	void clearGradients() {
+		for (int l = 0; l < gradients.length; l++) {
+			Arrays.fill(gradients[l], 0);
+		}
+	}
+
+	/**
+	 * Adds the gradients of given workspace to the gradients of this one.
+	 */
+	void addGradients(BatchWorkspace other) {
+		for (int l = 0; l < gradients.length; l++) {
+			Kernels.addScaled(other.gradients[l], 1, gradients[l], gradients[l].length);
+		}
+	}
+
+	/**
+	 * Adds given factor times the gradients to the weights of the net.
+	 */
+	void apply(float scale) {
+		for (int l = 0; l < gradients.length; l++) {
+			Kernels.addScaled(gradients[l], scale, net.getLayerWeights(l), gradients[l].length);
+		}
+	}
+
+	/**
+	 * Updates the weights of the net from the gradients with given optimizer,
+	 * layer by layer.
+	 */
+	void apply(Optimizer optimizer, float deltaScale, float learnRate) {
+		for (int l = 0; l < gradients.length; l++) {
+			optimizer.update(l, net.getLayerWeights(l), gradients[l], deltaScale, learnRate);
+		}
+	}
+
+	/**
+	 * Returns the root mean square of the weight changes given factor times
+	 * the gradients of given layer would apply.
+	 */
+	double updateMagnitude(int layer, float scale) {
+		float[] g = gradients[layer];
+		double sum = 0;
+		for (int i = 0; i < g.length; i++) {
+			sum += g[i] * g[i];
+		}
+		return Math.abs(scale) * Math.sqrt(sum / g.length);
+	}
+
+	/**
+	 * Keeps a copy of the current weights of the net, to measure the change of
+	 * the next update with {@link #changeMagnitude(int)}.
+	 */
+	void saveWeights() {
+		if (savedWeights == null) {
+			savedWeights = new float[gradients.length][];
+			for (int l = 0; l < gradients.length; l++) {
+				savedWeights[l] = new float[gradients[l].length];
+			}
+		}
+		for (int l = 0; l < gradients.length; l++) {
+			System.arraycopy(net.getLayerWeights(l), 0, savedWeights[l], 0, savedWeights[l].length);
+		}
+	}
+
+	/**
+	 * Returns the root mean square of the weight changes of given layer since
+	 * the last call of {@link #saveWeights()}.
+	 */
+	double changeMagnitude(int layer) {
+		float[] w = net.getLayerWeights(layer);
+		float[] saved = savedWeights[layer];
+		double sum = 0;
+		for (int i = 0; i < w.length; i++) {
+			double d = w[i] - saved[i];
+			sum += d * d;
+		}
+		return Math.sqrt(sum / w.length);
+	}
+
+	final LayeredNet net;
+	final int capacity;
+	final int[] sizes;
+	final float[][] activations;
+	final float[][] errors;
+	final float[][] gradients;
+
+	/**
+	 * Time the forward pass of the last call of compute took.
+	 */
+	long forwardNanos;
+
+	private float[][] savedWeights;
+}
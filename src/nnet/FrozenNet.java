@@ -0,0 +1,188 @@
+package nnet;
+
+import java.nio.FloatBuffer;
+
+/**
+ * An immutable snapshot of a trained {@link LayeredNet} for inference.
+ * 
+ * Keeps its own read-only copy of the layer weights, so later training of the
+ * original net does not affect it, and keeps no activations at all. Any number
+ * of threads may therefore evaluate one frozen net at the same time without
+ * locking, each either using a context of its own or letting every call
+ * allocate its small working buffers.
+ */
+public class FrozenNet {
+
+	/**
+	 * Creates a frozen net with given layer sizes and weight blocks, laid out
+	 * like {@link LayeredNet#getLayerWeights(int)}.
+	 */
+	FrozenNet(int[] layers, FloatBuffer[] weights, ActivationFunction activationFunction) {
+		this.layers = layers.clone();
+		this.activationFunction = activationFunction;
+		this.weights = new FloatBuffer[weights.length];
+		for (int l = 0; l < weights.length; l++) {
+			if (weights[l].capacity() != layers[l] * layers[l + 1]) {
+				throw new IllegalArgumentException("Weight block " + l + " does not match layer sizes");
+			}
+			this.weights[l] = weights[l].asReadOnlyBuffer();
+		}
+		this.layerOffsets = new int[layers.length];
+		int counter = 0;
+		for (int l = 0; l < layers.length; l++) {
+			layerOffsets[l] = counter;
+			counter += layers[l];
+		}
+		this.neuronCount = counter;
+	}
+
+	/**
+	 * Returns a frozen copy of the current weights of given net. Nets with
+	 * MATRIX storage must not have connections other than between adjacent
+	 * layers.
+	 */
+	public static FrozenNet of(LayeredNet net) {
+		int[] layers = new int[net.layerCount()];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = net.layerSize(l);
+		}
+
+		FloatBuffer[] weights = new FloatBuffer[layers.length - 1];
+		for (int l = 0; l < weights.length; l++) {
+			float[] w;
+			if (net.isDense()) {
+				w = net.getLayerWeights(l).clone();
+			} else {
+				w = new float[layers[l] * layers[l + 1]];
+				int rowOffset = net.layerOffset(l);
+				int colOffset = net.layerOffset(l + 1);
+				for (int i = 0; i < layers[l]; i++) {
+					int[] out = net.getOutputNeuronsFor(rowOffset + i);
+					for (int k = 0; k < out.length; k++) {
+						if (net.layerOf(out[k]) != l + 1) {
+							throw new IllegalArgumentException("Cannot freeze connection " + (rowOffset + i) + " -> " + out[k]
+									+ " between non-adjacent layers");
+						}
+						w[i * layers[l + 1] + out[k] - colOffset] = net.getWeight(rowOffset + i, out[k]);
+					}
+				}
+			}
+			weights[l] = FloatBuffer.wrap(w);
+		}
+		return new FrozenNet(layers, weights, net.getActivationFunction());
+	}
+
+	/**
+	 * Sets the weights between adjacent layers of given net, which must have
+	 * the same layer sizes, to the weights of this net.
+	 */
+	public void copyWeightsTo(LayeredNet net) {
+		if (net.layerCount() != layers.length) {
+			throw new IllegalArgumentException("Layer count differs");
+		}
+		for (int l = 0; l < layers.length; l++) {
+			if (net.layerSize(l) != layers[l]) {
+				throw new IllegalArgumentException("Size of layer " + l + " differs");
+			}
+		}
+		for (int l = 0; l < weights.length; l++) {
+			int cols = layers[l + 1];
+			if (net.isDense()) {
+				FloatBuffer w = weights[l].duplicate();
+				w.clear();
+				w.get(net.getLayerWeights(l));
+				continue;
+			}
+			int rowOffset = layerOffsets[l];
+			int colOffset = layerOffsets[l + 1];
+			for (int i = 0; i < layers[l]; i++) {
+				for (int j = 0; j < cols; j++) {
+					if (net.connected(rowOffset + i, colOffset + j)) {
+						net.setWeight(rowOffset + i, colOffset + j, weights[l].get(i * cols + j));
+					}
+				}
+			}
+		}
+	}
+
+	public int neuronCount() {
+		return neuronCount;
+	}
+
+	public int layerCount() {
+		return layers.length;
+	}
+
+	public int layerSize(int layer) {
+		return layers[layer];
+	}
+
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Returns the weight from neuron i of given layer to neuron j of the next
+	 * layer.
+	 */
+	public float getWeight(int layer, int i, int j) {
+		return weights[layer].get(i * layers[layer + 1] + j);
+	}
+
+	/**
+	 * Returns the output vector for given input vector, the same as
+	 * {@link LayeredNet#feedForward(float[])} of the original net would have.
+	 */
+	public float[] output(float[] input) {
+		float[] out = new float[layers[layers.length - 1]];
+		return output(newInferenceContext(), input, out);
+	}
+
+	/**
+	 * Writes the output vector for given input vector into given output buffer,
+	 * keeping all activations in given context. Does not allocate. A context
+	 * must not be used by more than one thread at a time.
+	 */
+	public float[] output(InferenceContext context, float[] input, float[] out) {
+		float[] act = context.activations;
+		if (act.length != neuronCount) {
+			throw new IllegalArgumentException("Inference context was not created for this net");
+		}
+		System.arraycopy(input, 0, act, 0, layers[0]);
+
+		int last = layers.length - 1;
+		for (int l = 1; l <= last; l++) {
+			FloatBuffer w = weights[l - 1];
+			int rows = layers[l - 1];
+			int cols = layers[l];
+			int prevOffset = layerOffsets[l - 1];
+			int offset = layerOffsets[l];
+			for (int j = offset; j < offset + cols; j++) {
+				act[j] = 0;
+			}
+			for (int i = 0; i < rows; i++) {
+				float a = act[prevOffset + i];
+				int base = i * cols;
+				for (int j = 0; j < cols; j++) {
+					act[offset + j] += w.get(base + j) * a;
+				}
+			}
+			if (l < last) {
+				activationFunction.apply(act, offset, offset + cols);
+			}
+		}
+
+		System.arraycopy(act, layerOffsets[last], out, 0, layers[last]);
+		return out;
+	}
+
+	public InferenceContext newInferenceContext() {
+		return new InferenceContext(neuronCount);
+	}
+
+	private final int[] layers;
+	private final int[] layerOffsets;
+	private final FloatBuffer[] weights;
+	private final ActivationFunction activationFunction;
+	private final int neuronCount;
+}
@@ -0,0 +1,194 @@
+package nnet;
+
+import nnet.metrics.MetricsRecorder;
+
+/**
+ * Trains a dense {@link LayeredNet} one sample at a time by gradient descent
+ * on the squared output error, back-propagating true gradients.
+ *
+ * Unlike {@link MyBackpropagation}, the error of each hidden neuron is
+ * multiplied by the derivative of the activation function at the weighted
+ * input sum of the neuron, taken from the forward pass of the same sample.
+ * Output neurons are linear, as in {@link LayeredNet#feedForward(float[])}.
+ * No error is computed for the input layer, since no update uses it.
+ *
+ * Weighted sums, activations and errors are kept in one array per layer, and
+ * each weight row is read once per sample: the error of a neuron is computed
+ * from its outgoing weights right before they are updated.
+ */
+public class GradientBackpropagation implements Trainer {
+
+	public GradientBackpropagation(LayeredNet net) {
+		if (!net.isDense()) {
+			throw new IllegalArgumentException("Gradient back-propagation requires a LayeredNet with DENSE storage");
+		}
+		int layerCount = net.layerCount();
+		this.net = net;
+		this.sizes = new int[layerCount];
+		this.sums = new float[layerCount][];
+		this.activations = new float[layerCount][];
+		this.errors = new float[layerCount][];
+		for (int l = 0; l < layerCount; l++) {
+			sizes[l] = net.layerSize(l);
+			if (l > 0) {
+				sums[l] = new float[sizes[l]];
+				activations[l] = l < layerCount - 1 ? new float[sizes[l]] : sums[l];
+				errors[l] = new float[sizes[l]];
+			}
+		}
+		this.metrics = new MetricsRecorder(layerCount - 1);
+	}
+
+	@Override
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * Sets the optimizer turning the weight deltas of each sample into a
+	 * weight update, or null for plain stochastic gradient descent, which is
+	 * the default and the fastest.
+	 */
+	public void setOptimizer(Optimizer optimizer) {
+		this.optimizer = optimizer;
+		if (optimizer != null && gradients == null) {
+			gradients = new float[sizes.length - 1][];
+			for (int l = 0; l < gradients.length; l++) {
+				gradients[l] = new float[sizes[l] * sizes[l + 1]];
+			}
+		}
+	}
+
+	/**
+	 * Returns the recorder collecting the metrics of this trainer, to add
+	 * listeners to. Each sample counts as a batch, and the weight update is
+	 * part of the backward time.
+	 */
+	public MetricsRecorder getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public float trainEpoch(float[][] inputs, float[][] targets, float learnRate) {
+		metrics.startEpoch();
+		float totalError = 0;
+		for (int s = 0; s < inputs.length; s++) {
+			long start = System.nanoTime();
+			forward(inputs[s]);
+			long forwardEnd = System.nanoTime();
+			float sampleError = backward(inputs[s], targets[s], learnRate);
+			totalError += sampleError;
+			metrics.recordBatch(1, sampleError, forwardEnd - start, System.nanoTime() - forwardEnd, 0);
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	/**
+	 * Runs one forward and backward pass for given sample, updates the weights
+	 * and returns the mean squared output error before the update.
+	 */
+	public float backpropagate(float[] input, float[] target, float learnRate) {
+		forward(input);
+		return backward(input, target, learnRate);
+	}
+
+	/**
+	 * Computes the weighted input sums and activations of all layers.
+	 */
+	private void forward(float[] input) {
+		int last = sizes.length - 1;
+		float[] previous = input;
+		ActivationFunction function = net.getActivationFunction();
+		for (int l = 1; l <= last; l++) {
+			Kernels.multiplyVector(previous, 0, sizes[l - 1], net.getLayerWeights(l - 1), sizes[l], sums[l], 0);
+			if (l < last) {
+				System.arraycopy(sums[l], 0, activations[l], 0, sizes[l]);
+				function.apply(activations[l], 0, sizes[l]);
+			}
+			previous = activations[l];
+		}
+	}
+
+	/**
+	 * Computes the output error and back-propagates it, updating the weights
+	 * on the way. Returns the mean squared output error.
+	 */
+	private float backward(float[] input, float[] target, float learnRate) {
+		int last = sizes.length - 1;
+		int outputSize = sizes[last];
+		float[] out = activations[last];
+		float[] errOut = errors[last];
+		float error = 0;
+		for (int j = 0; j < outputSize; j++) {
+			float e = target[j] - out[j];
+			errOut[j] = e;
+			error += (e * e) / outputSize;
+		}
+
+		if (optimizer != null) {
+			optimizedUpdate(input, learnRate);
+			return error;
+		}
+
+		ActivationFunction function = net.getActivationFunction();
+		for (int l = last - 1; l >= 0; l--) {
+			float[] w = net.getLayerWeights(l);
+			float[] act = l == 0 ? input : activations[l];
+			float[] next = errors[l + 1];
+			int cols = sizes[l + 1];
+			for (int i = 0; i < sizes[l]; i++) {
+				int row = i * cols;
+				if (l > 0) {
+					errors[l][i] = Kernels.dot(next, 0, w, row, cols) * function.derivative(sums[l][i], act[i]);
+				}
+				Kernels.axpy(act[i] * learnRate, next, 0, w, row, cols);
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Computes the errors of all hidden layers first, then has the optimizer
+	 * update each weight block from the outer product of activations and
+	 * errors.
+	 */
+	private void optimizedUpdate(float[] input, float learnRate) {
+		int last = sizes.length - 1;
+		ActivationFunction function = net.getActivationFunction();
+		for (int l = last - 1; l >= 1; l--) {
+			float[] w = net.getLayerWeights(l);
+			int cols = sizes[l + 1];
+			for (int i = 0; i < sizes[l]; i++) {
+				errors[l][i] = Kernels.dot(errors[l + 1], 0, w, i * cols, cols)
+						* function.derivative(sums[l][i], activations[l][i]);
+			}
+		}
+		for (int l = 0; l < last; l++) {
+			float[] act = l == 0 ? input : activations[l];
+			float[] g = gradients[l];
+			int cols = sizes[l + 1];
+			for (int i = 0; i < sizes[l]; i++) {
+				float a = act[i];
+				int row = i * cols;
+				for (int j = 0; j < cols; j++) {
+					g[row + j] = a * errors[l + 1][j];
+				}
+			}
+			optimizer.update(l, net.getLayerWeights(l), g, 1, learnRate);
+		}
+	}
+
+	private final LayeredNet net;
+	private final int[] sizes;
+	private final float[][] sums;
+	private final float[][] activations;
+	private final float[][] errors;
+	private final MetricsRecorder metrics;
+	private Optimizer optimizer;
+	private float[][] gradients;
+}
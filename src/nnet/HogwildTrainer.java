@@ -0,0 +1,149 @@
+package nnet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous, lock-free training of a dense {@link LayeredNet}
+ * ("Hogwild!" style).
+ * 
+ * Several threads each stream their share of the samples through the net and
+ * apply the per-sample update of {@link MyBackpropagation} straight to the
+ * shared layer weight blocks, without any locking. Concurrent updates of the
+ * same weight may get lost, which is accepted: on nets with many weights such
+ * races are rare and do little harm to convergence.
+ * 
+ * Every thread keeps its neuron activations and errors in buffers of its own,
+ * so the only state shared between threads are the weights. Unlike
+ * {@link ParallelTrainer}, results are not reproducible.
+ */
+public class HogwildTrainer implements Trainer {
+
+	public HogwildTrainer(LayeredNet net, int threads, long seed) {
+		if (!net.isDense()) {
+			throw new IllegalArgumentException("Hogwild training requires a LayeredNet with DENSE storage");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.net = net;
+		this.threads = threads;
+		this.pool = new ForkJoinPool(threads);
+		this.random = new Random(seed);
+	}
+
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	/**
+	 * Trains on all given samples once, in shuffled order, split evenly among
+	 * the threads. Returns the total error, i.e. the sum over all samples of the
+	 * mean squared output error.
+	 */
+	public float trainEpoch(final float[][] inputs, final float[][] targets, final float learnRate) {
+		final int[] order = new int[inputs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+
+		List<Callable<Float>> workers = new ArrayList<Callable<Float>>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int from = (int) ((long) order.length * t / threads);
+			final int to = (int) ((long) order.length * (t + 1) / threads);
+			workers.add(new Callable<Float>() {
+				public Float call() {
+					return train(inputs, targets, order, from, to, learnRate);
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		float totalError = 0;
+		try {
+			for (Future<Float> result : pool.invokeAll(workers)) {
+				totalError += result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while training", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Training failed", e.getCause());
+		}
+		trainingNanos += System.nanoTime() - start;
+		trainedSamples += inputs.length;
+		return totalError;
+	}
+
+	/**
+	 * Trains on samples order[from] to order[to - 1] one by one, using buffers
+	 * local to the calling thread.
+	 */
+	private float train(float[][] inputs, float[][] targets, int[] order, int from, int to, float learnRate) {
+		InferenceContext context = net.newInferenceContext();
+		float[] act = context.activations;
+		float[] err = new float[net.neuronCount()];
+		int last = net.layerCount() - 1;
+		int outOffset = net.layerOffset(last);
+		float[] out = new float[net.layerSize(last)];
+
+		float totalError = 0;
+		for (int i = from; i < to; i++) {
+			int sample = order[i];
+			net.output(context, inputs[sample], out);
+
+			float[] target = targets[sample];
+			Arrays.fill(err, 0);
+			for (int j = 0; j < out.length; j++) {
+				float e = target[j] - out[j];
+				err[outOffset + j] = e;
+				totalError += (e * e) / out.length;
+			}
+			MyBackpropagation.denseError(net, err);
+			MyBackpropagation.denseUpdate(net, act, err, learnRate);
+		}
+		return totalError;
+	}
+
+	public long getTrainedSamples() {
+		return trainedSamples;
+	}
+
+	/**
+	 * Returns the number of samples trained per second so far.
+	 */
+	public double samplesPerSecond() {
+		return trainingNanos == 0 ? 0 : trainedSamples * 1e9 / trainingNanos;
+	}
+
+	public void resetStatistics() {
+		trainedSamples = 0;
+		trainingNanos = 0;
+	}
+
+	/**
+	 * Stops the worker threads. The trainer cannot be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private final LayeredNet net;
+	private final int threads;
+	private final ForkJoinPool pool;
+	private final Random random;
+	private long trainedSamples;
+	private long trainingNanos;
+}
@@ -0,0 +1,37 @@
+package nnet;
+
+/**
+ * Per-thread working memory for evaluating a {@link LayeredNet} without
+ * touching the state of the net itself.
+ * 
+ * Create once per thread via {@link LayeredNet#newInferenceContext()} and
+ * reuse it for every call, so that inference does not allocate.
+ */
+public class InferenceContext {
+
+	InferenceContext(int neuronCount) {
+		this(neuronCount, 0);
+	}
+
+	/**
+	 * Creates a context with integer buffers for layers of up to given size
+	 * as well, see {@link QuantizedNet}.
+	 */
+	InferenceContext(int neuronCount, int maxLayerSize) {
+		this.activations = new float[neuronCount];
+		this.quantized = new byte[maxLayerSize];
+		this.accumulators = new int[maxLayerSize];
+	}
+
+	/**
+	 * Returns the neuron activations of the last evaluation run with this
+	 * context.
+	 */
+	public float getActivation(int neuron) {
+		return activations[neuron];
+	}
+
+	final float[] activations;
+	final byte[] quantized;
+	final int[] accumulators;
+}
@@ -0,0 +1,243 @@
+package nnet;
+
+import java.util.Arrays;
+
+/**
+ * Matrix kernels working on the row-major weight blocks of a dense
+ * {@link LayeredNet} and on row-major blocks of per-sample vectors.
+ *
+ * All kernels are built from two primitives with unit-stride inner loops:
+ * axpy (y += alpha * x) and dot products. The matrix loops are cache-blocked
+ * so that a tile of the right-hand matrix stays in cache while all rows of the
+ * left-hand matrix are streamed past it.
+ *
+ * There are three implementations of the primitives, selected once at
+ * startup:
+ *
+ * "vector" uses the Vector API (jdk.incubator.vector) of Java 16 and later,
+ * and hence SSE, AVX2 or AVX-512 instructions, whatever the CPU offers. It is
+ * built from the separate vector source tree and chosen whenever it can be
+ * loaded, i.e. when the JVM runs with --add-modules jdk.incubator.vector.
+ *
+ * "lanes" is the fallback on other JVMs. Its dot products sum into eight
+ * independent partial sums, which the CPU can add up in parallel instead of
+ * waiting for each addition; axpy is a plain loop.
+ *
+ * "scalar" sums in strictly ascending order, so that a batch of one gives
+ * bit-identical results to the per-sample code paths of {@link NNet}.
+ *
+ * axpy gives the same results in all three. Set the system property
+ * nnet.kernels to "vector", "lanes" or "scalar" to override the selection.
+ * Other values, and "vector" where it is not available, are ignored with a
+ * warning.
+ */
+public final class Kernels {
+
+	private Kernels() {
+	}
+
+	/**
+	 * Returns the name of the selected implementation, "vector", "lanes" or
+	 * "scalar".
+	 */
+	public static String implementation() {
+		return VECTOR != null ? "vector" : LANES ? "lanes" : "scalar";
+	}
+
+	/**
+	 * Returns the dot product of a[aOff] to a[aOff + n - 1] and b[bOff] to
+	 * b[bOff + n - 1].
+	 */
+	public static float dot(float[] a, int aOff, float[] b, int bOff, int n) {
+		if (VECTOR != null) {
+			return VECTOR.dot(a, aOff, b, bOff, n);
+		}
+		return LANES ? dotLanes(a, aOff, b, bOff, n) : dotScalar(a, aOff, b, bOff, n);
+	}
+
+	/**
+	 * Dot product summing in strictly ascending order.
+	 */
+	public static float dotScalar(float[] a, int aOff, float[] b, int bOff, int n) {
+		float sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += a[aOff + i] * b[bOff + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Dot product summing into eight independent partial sums.
+	 */
+	public static float dotLanes(float[] a, int aOff, float[] b, int bOff, int n) {
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+		int i = 0;
+		for (; i + 8 <= n; i += 8) {
+			int ai = aOff + i;
+			int bi = bOff + i;
+			s0 += a[ai] * b[bi];
+			s1 += a[ai + 1] * b[bi + 1];
+			s2 += a[ai + 2] * b[bi + 2];
+			s3 += a[ai + 3] * b[bi + 3];
+			s4 += a[ai + 4] * b[bi + 4];
+			s5 += a[ai + 5] * b[bi + 5];
+			s6 += a[ai + 6] * b[bi + 6];
+			s7 += a[ai + 7] * b[bi + 7];
+		}
+		float sum = ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+		for (; i < n; i++) {
+			sum += a[aOff + i] * b[bOff + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes y[yOff + i] += alpha * x[xOff + i] for i in 0 to n - 1.
+	 */
+	public static void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n) {
+		if (VECTOR != null) {
+			VECTOR.axpy(alpha, x, xOff, y, yOff, n);
+			return;
+		}
+		for (int i = 0; i < n; i++) {
+			y[yOff + i] += alpha * x[xOff + i];
+		}
+	}
+
+	/**
+	 * Computes y = x * w for a single vector x of length rows, where w is rows x
+	 * cols, writing cols values starting at y[yOff]. This is the dense
+	 * matrix-vector product of the forward pass.
+	 */
+	public static void multiplyVector(float[] x, int xOff, int rows, float[] w, int cols, float[] y, int yOff) {
+		Arrays.fill(y, yOff, yOff + cols, 0);
+		for (int i = 0; i < rows; i++) {
+			axpy(x[xOff + i], w, i * cols, y, yOff, cols);
+		}
+	}
+
+	/**
+	 * Computes w[i][j] += x[xOff + i] * y[yOff + j] * alpha, where w is rows x
+	 * cols. This is the outer-product weight update of a single sample.
+	 */
+	public static void addOuterProduct(float[] x, int xOff, int rows, float[] y, int yOff, int cols, float alpha, float[] w) {
+		for (int i = 0; i < rows; i++) {
+			float xi = x[xOff + i];
+			int base = i * cols;
+			for (int j = 0; j < cols; j++) {
+				w[base + j] += xi * y[yOff + j] * alpha;
+			}
+		}
+	}
+
+	/**
+	 * Computes c = a * b, where a is rows x inner, b is inner x cols and c is
+	 * rows x cols.
+	 */
+	public static void multiply(float[] a, int rows, int inner, float[] b, int cols, float[] c) {
+		Arrays.fill(c, 0, rows * cols, 0);
+		for (int kk = 0; kk < inner; kk += BLOCK) {
+			int kEnd = Math.min(kk + BLOCK, inner);
+			for (int jj = 0; jj < cols; jj += BLOCK) {
+				int width = Math.min(jj + BLOCK, cols) - jj;
+				for (int i = 0; i < rows; i++) {
+					int aRow = i * inner;
+					int cRow = i * cols;
+					for (int k = kk; k < kEnd; k++) {
+						axpy(a[aRow + k], b, k * cols + jj, c, cRow + jj, width);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes c = a * transpose(b), where a is rows x inner, b is cols x inner
+	 * and c is rows x cols. Each element is a dot product of two contiguous rows.
+	 */
+	public static void multiplyTransposed(float[] a, int rows, int inner, float[] b, int cols, float[] c) {
+		for (int jj = 0; jj < cols; jj += BLOCK) {
+			int jEnd = Math.min(jj + BLOCK, cols);
+			for (int i = 0; i < rows; i++) {
+				int aRow = i * inner;
+				int cRow = i * cols;
+				for (int j = jj; j < jEnd; j++) {
+					c[cRow + j] = dot(a, aRow, b, j * inner, inner);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes c += transpose(a) * b, where a is rows x m, b is rows x n and c
+	 * is m x n, i.e. adds up the outer products of corresponding rows of a and b.
+	 */
+	public static void addTransposedProduct(float[] a, int rows, int m, float[] b, int n, float[] c) {
+		for (int rr = 0; rr < m; rr += BLOCK) {
+			int rEnd = Math.min(rr + BLOCK, m);
+			for (int i = 0; i < rows; i++) {
+				int aRow = i * m;
+				int bRow = i * n;
+				for (int r = rr; r < rEnd; r++) {
+					axpy(a[aRow + r], b, bRow, c, r * n, n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes y += alpha * x over the first length elements.
+	 */
+	public static void addScaled(float[] x, float alpha, float[] y, int length) {
+		axpy(alpha, x, 0, y, 0, length);
+	}
+
+	/**
+	 * Dot product and axpy of an implementation loaded at runtime.
+	 */
+	interface Primitives {
+
+		float dot(float[] a, int aOff, float[] b, int bOff, int n);
+
+		void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n);
+	}
+
+	private static String selectedName() {
+		String property = System.getProperty("nnet.kernels");
+		if (property == null || property.equals("vector") || property.equals("lanes") || property.equals("scalar")) {
+			return property;
+		}
+		// failing here would leave the class unusable for good
+		System.err.println("Warning: unknown kernel implementation " + property + ", using the default");
+		return null;
+	}
+
+	private static Primitives loadVector(String name) {
+		if (name != null && !name.equals("vector")) {
+			return null;
+		}
+		try {
+			return (Primitives) Class.forName("nnet.VectorKernels").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			// not built, or running on Java 8
+		} catch (LinkageError e) {
+			// jdk.incubator.vector not added to the JVM
+		}
+		if (name != null) {
+			System.err.println("Warning: vector kernels not available, using lanes");
+		}
+		return null;
+	}
+
+	/**
+	 * Edge length of the square tiles, chosen so that a tile of floats fits
+	 * into a typical L1 data cache.
+	 */
+	static final int BLOCK = 64;
+
+	private static final String SELECTED = selectedName();
+
+	private static final Primitives VECTOR = loadVector(SELECTED);
+
+	private static final boolean LANES = !"scalar".equals(SELECTED);
+}
@@ -1,5 +1,9 @@
 package nnet;
 
+import java.util.Arrays;
+
+import nnet.data.Preprocessor;
+
 /**
  * A sequential model of a neural network separated into layers:
  * 
@@ -17,6 +21,17 @@ package nnet;
  * 
  * Supports training via back-propagation.
  * 
+ * 
+ * Weight storage:
+ * 
+ * MATRIX keeps the full adjacency and weight matrices of {@link NNet} and
+ * allows arbitrary (re-)connections. DENSE keeps one contiguous weight block
+ * per pair of adjacent layers instead, so memory scales with the sum of layer
+ * products rather than the square of the neuron count. Dense nets are always
+ * fully connected between adjacent layers and cannot be re-wired.
+ * OFF_HEAP (see {@link OffHeapLayeredNet}) keeps the same weight blocks, as
+ * well as the activations, outside the Java heap.
+ * 
  */
 public class LayeredNet extends NNet {
 
@@ -25,24 +40,89 @@ public class LayeredNet extends NNet {
 	}
 
 	public LayeredNet(int neuronCount, int[] layers, float initialWeight) {
-		super(neuronCount);
+		this(neuronCount, layers, initialWeight, MATRIX);
+	}
+
+	/**
+	 * Creates a layered net using the given weight storage, either
+	 * {@link #MATRIX} or {@link #DENSE}. See {@link OffHeapLayeredNet} for
+	 * off-heap storage.
+	 */
+	public LayeredNet(int neuronCount, int[] layers, float initialWeight, int storage) {
+		super(neuronCount, storage == MATRIX);
+		if (storage != MATRIX && storage != DENSE) {
+			throw new IllegalArgumentException("Unknown storage mode: " + storage);
+		}
+		this.storage = storage;
+		initLayers(neuronCount, layers);
+
+		if (storage == DENSE) {
+			this.layerWeights = new float[layers.length - 1][];
+			for (int i = 0; i < layers.length - 1; i++) {
+				layerWeights[i] = new float[layers[i] * layers[i + 1]];
+				if (initialWeight != 0) {
+					Arrays.fill(layerWeights[i], initialWeight);
+				}
+			}
+		} else {
+			beginEdits();
+			int counter = 0;
+			for (int i = 0; i < layers.length - 1; i++) {
+				int layersize = layers[i];
+				int nextLayersize = layers[i + 1];
+				for (int j = 0; j < layersize; j++) {
+					for (int k = 0; k < nextLayersize; k++) {
+						connect(counter + j, counter + layersize + k, initialWeight);
+					}
+				}
+				counter += layersize;
+			}
+			commitEdits();
+		}
+	}
+
+	/**
+	 * Sets up the layer structure only, for subclasses keeping weights and
+	 * activations in a storage of their own.
+	 */
+	LayeredNet(int[] layers, int storage) {
+		super(sum(layers), false, false);
+		this.storage = storage;
+		initLayers(sum(layers), layers);
+	}
+
+	private static int sum(int[] layers) {
+		int total = 0;
+		for (int i = 0; i < layers.length; i++) {
+			total += layers[i];
+		}
+		return total;
+	}
+
+	private void initLayers(int neuronCount, int[] layers) {
 		this.layers = layers;
+
+		int total = 0;
+		for (int i = 0; i < layers.length; i++) {
+			total += layers[i];
+		}
+		if (total != neuronCount) {
+			throw new IllegalArgumentException("Number of neurons ("+neuronCount+") does not match total number in layers ("+total+")!");
+		}
+
+		this.layerOffsets = new int[layers.length];
+		this.neuronLayer = new int[neuronCount];
+		this.layerNeurons = new int[layers.length][];
 		int counter = 0;
-		for (int i = 0; i < layers.length - 1; i++) {
-			int layersize = layers[i];
-			int nextLayersize = layers[i + 1];
-			for (int j = 0; j < layersize; j++) {
-				for (int k = 0; k < nextLayersize; k++) {
-					connect(counter + j, counter + layersize + k, initialWeight);
-				}
+		for (int i = 0; i < layers.length; i++) {
+			layerOffsets[i] = counter;
+			layerNeurons[i] = new int[layers[i]];
+			for (int j = 0; j < layers[i]; j++) {
+				neuronLayer[counter + j] = i;
+				layerNeurons[i][j] = counter + j;
 			}
-			counter += layersize;
+			counter += layers[i];
 		}
-		counter += layers[layers.length-1];
-		
-		if(counter!=neuronCount){
-			throw new IllegalArgumentException("Number of neurons ("+neuronCount+") does not match total number in layers ("+counter+")!");
-		}		
 	}
 
 	public int hiddenLayers() {
@@ -57,14 +137,16 @@ public class LayeredNet extends NNet {
 	}
 
 	/**
-	 * Returns the output vector for given input vector.
+	 * Returns the output vector for given input vector. Hidden neurons apply
+	 * the activation function of this net if doSigmoidActivation is set, not
+	 * necessarily the sigmoid.
 	 */
 	public float[] output(float[] input, boolean doSigmoidActivation) {
 		activateInputNeurons(input);
 		for (int i = 0; i < hiddenLayers(); i++) {
 			// compute next state of neuron activations
 			if (doSigmoidActivation) {
-				sigmoidShift();
+				activationShift();
 			} else {
 				shift();
 			}
@@ -77,7 +159,172 @@ public class LayeredNet extends NNet {
 		return outVals;
 	}
 
-	
+
+	/**
+	 * Sets each neuron activation to the activation function of this net
+	 * applied to its weighted input sum, the way {@link #sigmoidShift()} does
+	 * with the sigmoid.
+	 */
+	private void activationShift() {
+		float[] a = getInputActivations();
+		activationFunction.apply(a, 0, a.length);
+		activateAll(a);
+	}
+
+	/**
+	 * Returns the output vector for given input vector, evaluating each layer
+	 * exactly once from the activations of the previous layer.
+	 * 
+	 * With the default sigmoid activation function, gives the same output as
+	 * {@link #output(float[], boolean)}, but takes a single pass over the
+	 * connections instead of one full shift per hidden layer. Afterwards, input
+	 * neurons hold the input vector, hidden neurons their activations, and
+	 * output neurons the returned output.
+	 */
+	public float[] feedForward(float[] input) {
+		return feedForward(input, true);
+	}
+
+	/**
+	 * Returns the output vector for given input vector, evaluating each layer
+	 * exactly once from the activations of the previous layer. Hidden neurons
+	 * apply the activation function of this net if doSigmoidActivation is set.
+	 */
+	public float[] feedForward(float[] input, boolean doSigmoidActivation) {
+		float[] act = activationArray();
+		forward(act, input, doSigmoidActivation);
+
+		int last = layers.length - 1;
+		float[] outVals = new float[layers[last]];
+		System.arraycopy(act, layerOffsets[last], outVals, 0, outVals.length);
+		return outVals;
+	}
+
+	/**
+	 * Writes the output vector for given input vector into given output
+	 * buffer, the same way {@link #feedForward(float[])} does, without
+	 * allocating any memory. Returns the output buffer.
+	 */
+	public float[] output(float[] input, float[] out) {
+		float[] act = activationArray();
+		forward(act, input, true);
+		System.arraycopy(act, layerOffsets[layers.length - 1], out, 0, layers[layers.length - 1]);
+		return out;
+	}
+
+	/**
+	 * Writes the output vector for given input vector into given output
+	 * buffer, keeping all neuron activations in given context instead of this
+	 * net. Neither allocates memory nor changes the state of this net, so
+	 * threads each holding their own context may share one net as long as its
+	 * weights do not change. Returns the output buffer.
+	 */
+	public float[] output(InferenceContext context, float[] input, float[] out) {
+		float[] act = context.activations;
+		if (act.length != neuronCount()) {
+			throw new IllegalArgumentException("Inference context was not created for this net");
+		}
+		forward(act, input, true);
+		System.arraycopy(act, layerOffsets[layers.length - 1], out, 0, layers[layers.length - 1]);
+		return out;
+	}
+
+	/**
+	 * Writes the output vector for given raw input vector into given output
+	 * buffer like {@link #output(InferenceContext, float[], float[])}, passing
+	 * the input through given preprocessor first. The preprocessor writes
+	 * straight into the input layer activations of the context.
+	 */
+	public float[] output(InferenceContext context, Preprocessor preprocessor, float[] rawInput, float[] out) {
+		float[] act = context.activations;
+		if (act.length != neuronCount()) {
+			throw new IllegalArgumentException("Inference context was not created for this net");
+		}
+		if (preprocessor.outputSize() != layers[0]) {
+			throw new IllegalArgumentException("Preprocessor yields " + preprocessor.outputSize() + " inputs, net expects "
+					+ layers[0]);
+		}
+		preprocessor.apply(rawInput, 0, act, 0);
+		propagate(act, true);
+		System.arraycopy(act, layerOffsets[layers.length - 1], out, 0, layers[layers.length - 1]);
+		return out;
+	}
+
+	/**
+	 * Returns the output vectors for given input vectors, evaluating blocks of
+	 * samples at once. See {@link BatchInference} to reuse working buffers
+	 * between calls or to use several threads.
+	 */
+	public float[][] output(float[][] inputs) {
+		return new BatchInference(this, Math.max(1, Math.min(inputs.length, BATCH_BLOCK))).output(inputs);
+	}
+
+	/**
+	 * Writes the output vectors for count input vectors, stored row by row in
+	 * inputs, row by row into outputs, evaluating blocks of samples at once.
+	 * Returns outputs.
+	 */
+	public float[] output(float[] inputs, int count, float[] outputs) {
+		return new BatchInference(this, Math.max(1, Math.min(count, BATCH_BLOCK))).output(inputs, count, outputs);
+	}
+
+	/**
+	 * Returns a new context to run {@link #output(InferenceContext, float[], float[])}
+	 * with. A context must not be used by more than one thread at a time.
+	 */
+	public InferenceContext newInferenceContext() {
+		return new InferenceContext(neuronCount());
+	}
+
+	/**
+	 * Propagates given input through the net layer by layer, keeping all
+	 * activations in given vector.
+	 */
+	private void forward(float[] act, float[] input, boolean doSigmoidActivation) {
+		System.arraycopy(input, 0, act, 0, layers[0]);
+		propagate(act, doSigmoidActivation);
+	}
+
+	/**
+	 * Propagates the input layer activations in given vector through the net.
+	 */
+	private void propagate(float[] act, boolean doSigmoidActivation) {
+		int last = layers.length - 1;
+		for (int l = 1; l <= last; l++) {
+			int offset = layerOffsets[l];
+			int size = layers[l];
+			computeLayer(l, act);
+			if (doSigmoidActivation && l < last) {
+				activationFunction.apply(act, offset, offset + size);
+			}
+		}
+	}
+
+	/**
+	 * Computes the weighted input sums of all neurons in given layer into given
+	 * activation vector, from the activations of the layers before.
+	 */
+	void computeLayer(int layer, float[] act) {
+		if (storage == DENSE) {
+			denseLayer(layer, act);
+			return;
+		}
+		int offset = layerOffsets[layer];
+		for (int j = 0; j < layers[layer]; j++) {
+			act[offset + j] = getInputActivation(offset + j, act);
+		}
+	}
+
+	/**
+	 * Computes the weighted input sums of all neurons in given layer into given
+	 * activation vector, walking the weight block of the previous layer row by
+	 * row.
+	 */
+	private void denseLayer(int layer, float[] act) {
+		Kernels.multiplyVector(act, layerOffsets[layer - 1], layers[layer - 1], layerWeights[layer - 1], layers[layer], act,
+				layerOffsets[layer]);
+	}
+
 	@Override
 	public int[] inputNeurons() {
 		int[] in = new int[layers[0]];
@@ -111,6 +358,256 @@ public class LayeredNet extends NNet {
 		return hid;
 	}
 
+	/**
+	 * Returns the function hidden neurons apply to their weighted input sums in
+	 * the single-pass forward propagation and batch training. Defaults to
+	 * {@link ActivationFunctions#SIGMOID}.
+	 */
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	public void setActivationFunction(ActivationFunction activationFunction) {
+		this.activationFunction = activationFunction;
+	}
+
+	/**
+	 * Returns the weight storage mode of this net, {@link #MATRIX},
+	 * {@link #DENSE} or {@link #OFF_HEAP}.
+	 */
+	public int getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Returns true if this net keeps per-layer weight blocks.
+	 */
+	public boolean isDense() {
+		return storage == DENSE;
+	}
+
+	public int layerCount() {
+		return layers.length;
+	}
+
+	public int layerSize(int layer) {
+		return layers[layer];
+	}
+
+	/**
+	 * Returns the index of the first neuron in given layer.
+	 */
+	public int layerOffset(int layer) {
+		return layerOffsets[layer];
+	}
+
+	public int layerOf(int neuron) {
+		return neuronLayer[neuron];
+	}
+
+	/**
+	 * Returns the live weight block connecting given layer to the next one.
+	 * Row i holds the weights from neuron i of the layer to all neurons of the
+	 * next layer, i.e. the weight from i to j is at index i * layerSize(layer + 1) + j.
+	 * 
+	 * Only available in DENSE storage mode.
+	 */
+	public float[] getLayerWeights(int layer) {
+		if (storage != DENSE) {
+			throw new IllegalStateException("Layer weights are only available in DENSE storage mode");
+		}
+		return layerWeights[layer];
+	}
+
+	@Override
+	public void connect(int neuron1, int neuron2, float weight) {
+		if (storage != DENSE) {
+			super.connect(neuron1, neuron2, weight);
+			return;
+		}
+		if (!adjacent(neuron1, neuron2)) {
+			throw new UnsupportedOperationException("Dense layer storage only connects neurons of adjacent layers");
+		}
+		layerWeights[neuronLayer[neuron1]][denseIndex(neuron1, neuron2)] = weight;
+	}
+
+	@Override
+	public void disconnect(int neuron1, int neuron2) {
+		if (storage == MATRIX) {
+			super.disconnect(neuron1, neuron2);
+			return;
+		}
+		throw new UnsupportedOperationException("Only MATRIX storage supports disconnecting neurons");
+	}
+
+	@Override
+	public boolean connected(int n1, int n2) {
+		if (storage == MATRIX) {
+			return super.connected(n1, n2);
+		}
+		return adjacent(n1, n2);
+	}
+
+	@Override
+	public float getWeight(int n1, int n2) {
+		if (storage != DENSE) {
+			return super.getWeight(n1, n2);
+		}
+		if (!adjacent(n1, n2)) {
+			return 0;
+		}
+		return layerWeights[neuronLayer[n1]][denseIndex(n1, n2)];
+	}
+
+	@Override
+	public void setWeight(int n1, int n2, float w) {
+		if (storage != DENSE) {
+			super.setWeight(n1, n2, w);
+			return;
+		}
+		if (adjacent(n1, n2)) {
+			layerWeights[neuronLayer[n1]][denseIndex(n1, n2)] = w;
+		}
+	}
+
+	@Override
+	public void randomlyInitWeights(float min, float max) {
+		if (storage != DENSE) {
+			super.randomlyInitWeights(min, max);
+			return;
+		}
+		float interval = max - min;
+		for (int l = 0; l < layerWeights.length; l++) {
+			float[] w = layerWeights[l];
+			for (int i = 0; i < w.length; i++) {
+				w[i] = min + (float) Math.random() * interval;
+			}
+		}
+	}
+
+	@Override
+	public boolean isInputNeuron(int n) {
+		if (storage == MATRIX) {
+			return super.isInputNeuron(n);
+		}
+		return neuronLayer[n] == 0;
+	}
+
+	@Override
+	public int inDegree(int neuron) {
+		if (storage == MATRIX) {
+			return super.inDegree(neuron);
+		}
+		int layer = neuronLayer[neuron];
+		return layer == 0 ? 0 : layers[layer - 1];
+	}
+
+	@Override
+	public int outDegree(int neuron) {
+		if (storage == MATRIX) {
+			return super.outDegree(neuron);
+		}
+		int layer = neuronLayer[neuron];
+		return layer == layers.length - 1 ? 0 : layers[layer + 1];
+	}
+
+	@Override
+	public int[] getInputNeuronsFor(int neuron) {
+		if (storage == MATRIX) {
+			return super.getInputNeuronsFor(neuron);
+		}
+		int layer = neuronLayer[neuron];
+		if (layer == 0) {
+			return NO_NEURONS;
+		}
+		return layerNeurons[layer - 1];
+	}
+
+	@Override
+	public int[] getOutputNeuronsFor(int neuron) {
+		if (storage == MATRIX) {
+			return super.getOutputNeuronsFor(neuron);
+		}
+		int layer = neuronLayer[neuron];
+		if (layer == layers.length - 1) {
+			return NO_NEURONS;
+		}
+		return layerNeurons[layer + 1];
+	}
+
+	@Override
+	public float getInputActivation(int neuron, float[] activations) {
+		if (storage != DENSE) {
+			return super.getInputActivation(neuron, activations);
+		}
+		int layer = neuronLayer[neuron];
+		if (layer == 0) {
+			return 0;
+		}
+		float[] w = layerWeights[layer - 1];
+		int cols = layers[layer];
+		int col = neuron - layerOffsets[layer];
+		int prevOffset = layerOffsets[layer - 1];
+		int prevSize = layers[layer - 1];
+		float sum = 0;
+		for (int i = 0; i < prevSize; i++) {
+			sum += w[i * cols + col] * activations[prevOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public NN copy() {
+		if (storage != DENSE) {
+			return super.copy();
+		}
+		LayeredNet copy = new LayeredNet(neuronCount(), layers.clone(), 0, DENSE);
+		copy.activationFunction = activationFunction;
+		for (int l = 0; l < layerWeights.length; l++) {
+			System.arraycopy(layerWeights[l], 0, copy.layerWeights[l], 0, layerWeights[l].length);
+		}
+		return copy;
+	}
+
+	private boolean adjacent(int n1, int n2) {
+		return neuronLayer[n2] == neuronLayer[n1] + 1;
+	}
+
+	private int denseIndex(int n1, int n2) {
+		int layer = neuronLayer[n1];
+		return (n1 - layerOffsets[layer]) * layers[layer + 1] + (n2 - layerOffsets[layer + 1]);
+	}
+
+	private static final int[] NO_NEURONS = new int[0];
+
+	/**
+	 * Number of samples evaluated at once by the batch output methods.
+	 */
+	private static final int BATCH_BLOCK = 64;
+
+	/**
+	 * Storage mode keeping full adjacency and weight matrices.
+	 */
+	public static final int MATRIX = 0;
+
+	/**
+	 * Storage mode keeping one weight block per pair of adjacent layers.
+	 */
+	public static final int DENSE = 1;
+
+	/**
+	 * Storage mode of {@link OffHeapLayeredNet}, keeping weight blocks and
+	 * activations outside the Java heap.
+	 */
+	public static final int OFF_HEAP = 2;
+
 	private int[] layers;
+	private int[] layerOffsets;
+	private int[] neuronLayer;
+	// shared, read-only neuron index arrays per layer
+	private int[][] layerNeurons;
+	private float[][] layerWeights;
+	private int storage;
+	private ActivationFunction activationFunction = ActivationFunctions.SIGMOID;
 
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package nnet;
+
+/**
+ * Determines the learning rate of each training epoch. See
+ * {@link LearningRateSchedules} for common schedules.
+ */
+public interface LearningRateSchedule {
+
+	/**
+	 * Returns the learning rate for given epoch, counting from 0.
+	 */
+	float learnRate(int epoch);
+}
@@ -0,0 +1,63 @@
+package nnet;
+
+/**
+ * Common {@link LearningRateSchedule}s.
+ */
+public final class LearningRateSchedules {
+
+	private LearningRateSchedules() {
+	}
+
+	/**
+	 * Returns a schedule keeping given rate.
+	 */
+	public static LearningRateSchedule constant(final float learnRate) {
+		return new LearningRateSchedule() {
+			public float learnRate(int epoch) {
+				return learnRate;
+			}
+		};
+	}
+
+	/**
+	 * Returns a schedule multiplying the rate by given factor every given
+	 * number of epochs.
+	 */
+	public static LearningRateSchedule step(final float initialRate, final float factor, final int epochs) {
+		if (epochs < 1) {
+			throw new IllegalArgumentException("Step width must be positive: " + epochs);
+		}
+		return new LearningRateSchedule() {
+			public float learnRate(int epoch) {
+				return (float) (initialRate * Math.pow(factor, epoch / epochs));
+			}
+		};
+	}
+
+	/**
+	 * Returns a schedule decreasing the rate by given fraction of itself every
+	 * epoch, i.e. simulated annealing: rate(e) = initialRate * (1 - decay)^e.
+	 */
+	public static LearningRateSchedule exponential(final float initialRate, final float decay) {
+		return new LearningRateSchedule() {
+			public float learnRate(int epoch) {
+				return (float) (initialRate * Math.pow(1 - decay, epoch));
+			}
+		};
+	}
+
+	/**
+	 * Returns a schedule decreasing the rate linearly from initialRate to
+	 * finalRate over given number of epochs, keeping finalRate afterwards.
+	 */
+	public static LearningRateSchedule linear(final float initialRate, final float finalRate, final int epochs) {
+		return new LearningRateSchedule() {
+			public float learnRate(int epoch) {
+				if (epoch >= epochs) {
+					return finalRate;
+				}
+				return initialRate + (finalRate - initialRate) * epoch / epochs;
+			}
+		};
+	}
+}
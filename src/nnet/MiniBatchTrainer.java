@@ -0,0 +1,160 @@
+package nnet;
+
+import java.io.IOException;
+
+import nnet.data.Batch;
+import nnet.data.StreamingDataset;
+import nnet.metrics.MetricsRecorder;
+
+/**
+ * Trains a dense {@link LayeredNet} on mini-batches of samples.
+ * 
+ * Each batch is run forward and backward as matrix-matrix products over the
+ * layer weight blocks (see {@link Kernels}), and the weights are then updated
+ * once by the mean of the per-sample deltas of the batch. The learning rule
+ * itself is the one of {@link MyBackpropagation}.
+ * 
+ * Keeps track of the number of samples trained and the time spent, so the
+ * throughput can be compared against per-sample training. More detailed
+ * metrics per epoch are available through {@link #getMetrics()}.
+ */
+public class MiniBatchTrainer implements Trainer {
+
+	public MiniBatchTrainer(LayeredNet net, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		this.net = net;
+		this.batchSize = batchSize;
+		this.workspace = new BatchWorkspace(net, batchSize);
+		this.metrics = new MetricsRecorder(net.layerCount() - 1);
+	}
+
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * Sets the optimizer turning the mean weight deltas of each batch into a
+	 * weight update, or null for the plain update of {@link MyBackpropagation},
+	 * which is the default.
+	 */
+	public void setOptimizer(Optimizer optimizer) {
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * Returns the recorder collecting the metrics of this trainer, to add
+	 * listeners to. Each call of trainEpoch makes one epoch.
+	 */
+	public MetricsRecorder getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Trains on all given samples once, batch by batch, and returns the total
+	 * error, i.e. the sum over all samples of the mean squared output error.
+	 */
+	public float trainEpoch(float[][] inputs, float[][] targets, float learnRate) {
+		metrics.startEpoch();
+		float totalError = 0;
+		for (int from = 0; from < inputs.length; from += batchSize) {
+			totalError += trainBatch(inputs, targets, from, Math.min(from + batchSize, inputs.length), learnRate);
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	/**
+	 * Trains on one epoch of given streaming data set, one weight update per
+	 * batch delivered, and returns the total error.
+	 */
+	public float trainEpoch(StreamingDataset data, float learnRate) throws IOException {
+		metrics.startEpoch();
+		float totalError = 0;
+		for (Batch batch = data.next(); batch != null; batch = data.next()) {
+			for (int from = 0; from < batch.size(); from += batchSize) {
+				int to = Math.min(from + batchSize, batch.size());
+				totalError += trainBatch(batch.inputs(), batch.targets(), from, to, learnRate);
+			}
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	/**
+	 * Trains on one block of samples, applying a single weight update, and
+	 * returns the total error of the block.
+	 */
+	public float trainBatch(float[][] inputs, float[][] targets, float learnRate) {
+		return trainBatch(inputs, targets, 0, inputs.length, learnRate);
+	}
+
+	/**
+	 * Trains on samples from (inclusive) to (exclusive), at most batchSize many,
+	 * applying a single weight update, and returns the total error of the block.
+	 */
+	public float trainBatch(float[][] inputs, float[][] targets, int from, int to, float learnRate) {
+		long start = System.nanoTime();
+		float error = workspace.compute(inputs, targets, null, from, to);
+		long computed = System.nanoTime();
+		float scale = learnRate / (to - from);
+		boolean sampling = metrics.isSampling();
+		if (sampling && optimizer == null) {
+			for (int l = 0; l < net.layerCount() - 1; l++) {
+				metrics.recordUpdateMagnitude(l, workspace.updateMagnitude(l, scale));
+			}
+		} else if (sampling) {
+			workspace.saveWeights();
+		}
+		long updateStart = System.nanoTime();
+		if (optimizer == null) {
+			workspace.apply(scale);
+		} else {
+			workspace.apply(optimizer, 1f / (to - from), learnRate);
+		}
+		long end = System.nanoTime();
+		if (sampling && optimizer != null) {
+			for (int l = 0; l < net.layerCount() - 1; l++) {
+				metrics.recordUpdateMagnitude(l, workspace.changeMagnitude(l));
+			}
+		}
+		trainingNanos += end - start;
+		trainedSamples += to - from;
+		metrics.recordBatch(to - from, error, workspace.forwardNanos, computed - start - workspace.forwardNanos,
+				end - updateStart);
+		return error;
+	}
+
+	public long getTrainedSamples() {
+		return trainedSamples;
+	}
+
+	/**
+	 * Returns the number of samples trained per second so far.
+	 */
+	public double samplesPerSecond() {
+		return trainingNanos == 0 ? 0 : trainedSamples * 1e9 / trainingNanos;
+	}
+
+	public void resetStatistics() {
+		trainedSamples = 0;
+		trainingNanos = 0;
+	}
+
+	private final LayeredNet net;
+	private final int batchSize;
+	private final BatchWorkspace workspace;
+	private final MetricsRecorder metrics;
+	private Optimizer optimizer;
+	private long trainedSamples;
+	private long trainingNanos;
+}
@@ -0,0 +1,334 @@
+package nnet;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes trained {@link LayeredNet}s in a compact, versioned binary
+ * format.
+ *
+ * All numbers are little-endian. The file consists of a header
+ *
+ * magic "NNET", int version, int layer count, int[] layer sizes,
+ * int name length, UTF-8 name of the activation function,
+ *
+ * one structure entry per pair of adjacent layers, either byte FULL if every
+ * neuron of the layer is connected to every neuron of the next layer, or byte
+ * MASKED followed by a row-major bit mask of the connections,
+ *
+ * zero padding up to the next multiple of 64 bytes, and finally the weight
+ * section: one row-major float block per pair of adjacent layers, laid out
+ * like {@link LayeredNet#getLayerWeights(int)}, with 0 for missing connections.
+ *
+ * Since the weight section is aligned and in machine-independent order,
+ * {@link #map(Path)} can memory-map it straight into an inference-ready
+ * {@link FrozenNet}: loading takes no time regardless of model size, and
+ * processes mapping the same file share one copy in the page cache.
+ */
+public final class ModelFile {
+
+	private ModelFile() {
+	}
+
+	/**
+	 * Writes given net to given file. The net must not have connections other
+	 * than between adjacent layers.
+	 */
+	public static void write(LayeredNet net, Path file) throws IOException {
+		int layerCount = net.layerCount();
+		byte[] name = net.getActivationFunction().name().getBytes(UTF8);
+
+		byte[][] masks = new byte[layerCount - 1][];
+		int headerSize = 4 + 4 + 4 + 4 * layerCount + 4 + name.length;
+		for (int l = 0; l < layerCount - 1; l++) {
+			masks[l] = connectionMask(net, l);
+			headerSize += 1 + (masks[l] == null ? 0 : masks[l].length);
+		}
+		int weightOffset = align(headerSize);
+
+		ByteBuffer header = ByteBuffer.allocate(weightOffset).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(layerCount);
+		for (int l = 0; l < layerCount; l++) {
+			header.putInt(net.layerSize(l));
+		}
+		header.putInt(name.length);
+		header.put(name);
+		for (int l = 0; l < layerCount - 1; l++) {
+			if (masks[l] == null) {
+				header.put(FULL);
+			} else {
+				header.put(MASKED);
+				header.put(masks[l]);
+			}
+		}
+		header.rewind();
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		try {
+			writeFully(channel, header);
+			ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			for (int l = 0; l < layerCount - 1; l++) {
+				int rows = net.layerSize(l);
+				int cols = net.layerSize(l + 1);
+				float[] dense = net.isDense() ? net.getLayerWeights(l) : null;
+				for (int i = 0; i < rows; i++) {
+					for (int j = 0; j < cols; j++) {
+						if (!chunk.hasRemaining()) {
+							chunk.flip();
+							writeFully(channel, chunk);
+							chunk.clear();
+						}
+						chunk.putFloat(dense != null ? dense[i * cols + j]
+								: net.getWeight(net.layerOffset(l) + i, net.layerOffset(l + 1) + j));
+					}
+				}
+			}
+			chunk.flip();
+			writeFully(channel, chunk);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a net from given file into memory. Returns a net with DENSE storage
+	 * if all adjacent layers are fully connected, and one with MATRIX storage
+	 * otherwise.
+	 */
+	public static LayeredNet read(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			Header header = readHeader(channel);
+			int[] layers = header.layers;
+			boolean full = true;
+			for (int l = 0; l < header.masks.length; l++) {
+				full &= header.masks[l] == null;
+			}
+
+			LayeredNet net = new LayeredNet(header.neuronCount, layers, 0, full ? LayeredNet.DENSE : LayeredNet.MATRIX);
+			net.setActivationFunction(header.activationFunction);
+
+			channel.position(header.weightOffset);
+			ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			chunk.limit(0);
+			for (int l = 0; l < layers.length - 1; l++) {
+				int rows = layers[l];
+				int cols = layers[l + 1];
+				byte[] mask = header.masks[l];
+				for (int k = 0; k < rows * cols; k++) {
+					if (chunk.remaining() < 4) {
+						chunk.compact();
+						readFully(channel, chunk, 4 - chunk.position());
+						chunk.flip();
+					}
+					float w = chunk.getFloat();
+					int n1 = net.layerOffset(l) + k / cols;
+					int n2 = net.layerOffset(l + 1) + k % cols;
+					if (full) {
+						net.getLayerWeights(l)[k] = w;
+					} else if (mask != null && (mask[k >> 3] & (1 << (k & 7))) == 0) {
+						net.disconnect(n1, n2);
+					} else {
+						net.setWeight(n1, n2, w);
+					}
+				}
+			}
+			return net;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Memory-maps the weights of given file read-only and returns a frozen net
+	 * evaluating straight from the mapping. The mapping stays valid after the
+	 * file is closed, and as long as the frozen net is reachable.
+	 */
+	public static FrozenNet map(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			Header header = readHeader(channel);
+			int[] layers = header.layers;
+			FloatBuffer[] weights = new FloatBuffer[layers.length - 1];
+			long offset = header.weightOffset;
+			for (int l = 0; l < weights.length; l++) {
+				long bytes = 4L * layers[l] * layers[l + 1];
+				if (offset + bytes > channel.size()) {
+					throw new EOFException("Weight block " + l + " exceeds end of file " + file);
+				}
+				weights[l] = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(ByteOrder.LITTLE_ENDIAN)
+						.asFloatBuffer();
+				offset += bytes;
+			}
+			return new FrozenNet(layers, weights, header.activationFunction);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the connection bit mask between given layer and the next, or null
+	 * if they are fully connected.
+	 */
+	private static byte[] connectionMask(LayeredNet net, int layer) {
+		int rows = net.layerSize(layer);
+		int cols = net.layerSize(layer + 1);
+		int rowOffset = net.layerOffset(layer);
+		int colOffset = net.layerOffset(layer + 1);
+		byte[] mask = new byte[(rows * cols + 7) / 8];
+		boolean full = true;
+		for (int i = 0; i < rows; i++) {
+			int[] out = net.getOutputNeuronsFor(rowOffset + i);
+			for (int k = 0; k < out.length; k++) {
+				if (net.layerOf(out[k]) != layer + 1) {
+					throw new IllegalArgumentException("Cannot store connection " + (rowOffset + i) + " -> " + out[k]
+							+ " between non-adjacent layers");
+				}
+				int bit = i * cols + out[k] - colOffset;
+				mask[bit >> 3] |= 1 << (bit & 7);
+			}
+			full &= out.length == cols;
+		}
+		return full ? null : mask;
+	}
+
+	private static Header readHeader(FileChannel channel) throws IOException {
+		ByteBuffer start = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, start, 12);
+		start.flip();
+		byte[] magic = new byte[4];
+		start.get(magic);
+		for (int i = 0; i < 4; i++) {
+			if (magic[i] != MAGIC[i]) {
+				throw new IOException("Not a model file");
+			}
+		}
+		int version = start.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported model file version " + version);
+		}
+		int layerCount = start.getInt();
+		if (layerCount < 2 || 4L * layerCount + 4 > remaining(channel)) {
+			throw new IOException("Invalid layer count " + layerCount);
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(4 * layerCount + 4).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, buf, buf.capacity());
+		buf.flip();
+		Header header = new Header();
+		header.layers = new int[layerCount];
+		long neuronCount = 0;
+		long weightBytes = 0;
+		for (int l = 0; l < layerCount; l++) {
+			header.layers[l] = buf.getInt();
+			if (header.layers[l] <= 0) {
+				throw new IOException("Invalid size " + header.layers[l] + " of layer " + l);
+			}
+			neuronCount += header.layers[l];
+			if (l > 0) {
+				long bytes = 4L * header.layers[l - 1] * header.layers[l];
+				if (bytes > Integer.MAX_VALUE) {
+					throw new IOException("Weight block " + (l - 1) + " exceeds 2 GB");
+				}
+				weightBytes += bytes;
+			}
+		}
+		if (neuronCount > Integer.MAX_VALUE) {
+			throw new IOException("Invalid neuron count " + neuronCount);
+		}
+		header.neuronCount = (int) neuronCount;
+		int nameLength = buf.getInt();
+		if (nameLength < 0 || nameLength > remaining(channel)) {
+			throw new IOException("Invalid activation function name length " + nameLength);
+		}
+		byte[] name = new byte[nameLength];
+		buf = ByteBuffer.wrap(name);
+		readFully(channel, buf, name.length);
+		try {
+			header.activationFunction = ActivationFunctions.forName(new String(name, UTF8));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown activation function " + new String(name, UTF8));
+		}
+
+		header.masks = new byte[layerCount - 1][];
+		ByteBuffer kind = ByteBuffer.allocate(1);
+		for (int l = 0; l < layerCount - 1; l++) {
+			kind.clear();
+			readFully(channel, kind, 1);
+			if (kind.get(0) == MASKED) {
+				int maskBytes = (int) (((long) header.layers[l] * header.layers[l + 1] + 7) / 8);
+				if (maskBytes > remaining(channel)) {
+					throw new EOFException("Connection mask of layer " + l + " exceeds end of model file");
+				}
+				header.masks[l] = new byte[maskBytes];
+				readFully(channel, ByteBuffer.wrap(header.masks[l]), header.masks[l].length);
+			} else if (kind.get(0) != FULL) {
+				throw new IOException("Invalid structure entry " + kind.get(0) + " for layer " + l);
+			}
+		}
+		header.weightOffset = align(channel.position());
+		if (header.weightOffset + weightBytes > channel.size()) {
+			throw new EOFException("Weights exceed end of model file");
+		}
+		return header;
+	}
+
+	private static long remaining(FileChannel channel) throws IOException {
+		return channel.size() - channel.position();
+	}
+
+	/**
+	 * Reads from given channel into given buffer until at least given number of
+	 * bytes were read or the buffer is full.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, int atLeast) throws IOException {
+		int read = 0;
+		while (read < atLeast && buffer.hasRemaining()) {
+			int n = channel.read(buffer);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of model file");
+			}
+			read += n;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static int align(long position) {
+		return (int) ((position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT);
+	}
+
+	private static class Header {
+		int[] layers;
+		int neuronCount;
+		ActivationFunction activationFunction;
+		byte[][] masks;
+		long weightOffset;
+	}
+
+	/**
+	 * Current version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { 'N', 'N', 'E', 'T' };
+	private static final byte FULL = 0;
+	private static final byte MASKED = 1;
+	private static final int ALIGNMENT = 64;
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+}
@@ -10,11 +10,17 @@ public class MyBackpropagation {
 	 * acc.) after a while (~250 epochs each on a random 50% selection out of
 	 * all 60,000 training samples; each sample down-scaled from 28x28 to 14x14
 	 * pixels).
+	 * 
+	 * See {@link GradientBackpropagation} for training with true gradients.
 	 */
 	public static float[] backpropagate(LayeredNet net, float[] target_output, float[] actual_output, float learnRate) {
 
 		float[] err = error(net, target_output, actual_output);
 
+		if (net.isDense()) {
+			return denseBackpropagate(net, err, learnRate);
+		}
+
 		int[] out = net.outputNeurons();
 		float[] errout = new float[out.length];
 
@@ -58,6 +64,11 @@ public class MyBackpropagation {
 			err[outputNeurons[i]] = target_output[i] - output[i];
 		}
 
+		if (net.isDense()) {
+			denseError(net, err);
+			return err;
+		}
+
 		int[] hiddenNeurons = net.hiddenNeurons();
 		for (int i = hiddenNeurons.length - 1; i >= 0; i--) {
 			outputNeurons = net.getOutputNeuronsFor(hiddenNeurons[i]);
@@ -77,4 +88,53 @@ public class MyBackpropagation {
 		return err;
 	}
 
+	/**
+	 * Same update rule as above, walking the per-layer weight blocks directly.
+	 */
+	private static float[] denseBackpropagate(LayeredNet net, float[] err, float learnRate) {
+		int last = net.layerCount() - 1;
+		int outOffset = net.layerOffset(last);
+		float[] errout = new float[net.layerSize(last)];
+		for (int i = 0; i < errout.length; i++) {
+			errout[i] = err[outOffset + i] * err[outOffset + i];
+		}
+
+		denseUpdate(net, net.activationArray(), err, learnRate);
+
+		return errout;
+	}
+
+	/**
+	 * Adds activation times error times learning rate to each weight of the
+	 * per-layer weight blocks, taking activations and errors from given vectors.
+	 */
+	static void denseUpdate(LayeredNet net, float[] act, float[] err, float learnRate) {
+		int last = net.layerCount() - 1;
+		for (int l = 0; l < last; l++) {
+			float[] w = net.getLayerWeights(l);
+			int rows = net.layerSize(l);
+			int cols = net.layerSize(l + 1);
+			int rowOffset = net.layerOffset(l);
+			int colOffset = net.layerOffset(l + 1);
+			Kernels.addOuterProduct(act, rowOffset, rows, err, colOffset, cols, learnRate, w);
+		}
+	}
+
+	/**
+	 * Propagates the output error back through the per-layer weight blocks,
+	 * down to and including the input layer.
+	 */
+	static void denseError(LayeredNet net, float[] err) {
+		for (int l = net.layerCount() - 2; l >= 0; l--) {
+			float[] w = net.getLayerWeights(l);
+			int rows = net.layerSize(l);
+			int cols = net.layerSize(l + 1);
+			int rowOffset = net.layerOffset(l);
+			int colOffset = net.layerOffset(l + 1);
+			for (int i = 0; i < rows; i++) {
+				err[rowOffset + i] += Kernels.dot(err, colOffset, w, i * cols, cols);
+			}
+		}
+	}
+
 }
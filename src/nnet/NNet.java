@@ -1,9 +1,6 @@
 package nnet;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * 
@@ -12,7 +9,13 @@ import java.util.Map;
  * Comprises a number of neurons, an adjacency matrix, a weight matrix, and a
  * neuron activation vector.
  * 
- * To speed things up a little, for each neuron, its input and output neurons are cached.
+ * To speed things up a little, a topology index is kept next to the matrices:
+ * the in- and out-degree of each neuron, the set of input neurons, and for
+ * each neuron its input and output neurons in sorted primitive arrays. A
+ * connect or disconnect updates the index in place, at a cost of O(degree)
+ * rather than O(neuronCount). Many edits in a row can be grouped between
+ * {@link #beginEdits()} and {@link #commitEdits()}, which defers the updates
+ * of the neighbour lists to one consolidation step.
  * 
  * Please be careful with the number of neurons vs. quadratic space consumption! 
  * This implementation is better suited for small networks.
@@ -20,13 +23,44 @@ import java.util.Map;
 public class NNet implements NN {
 
 	public NNet(int neuronCount) {
+		this(neuronCount, true);
+	}
+
+	/**
+	 * Subclasses that keep their own connection storage may skip allocating the
+	 * quadratic adjacency and weight matrices. They must then override every
+	 * method touching connections and weights.
+	 */
+	protected NNet(int neuronCount, boolean allocateMatrices) {
+		this(neuronCount, allocateMatrices, true);
+	}
+
+	/**
+	 * Subclasses that also keep activations elsewhere may skip allocating the
+	 * activation vector. They must then override every method touching
+	 * activations as well.
+	 */
+	protected NNet(int neuronCount, boolean allocateMatrices, boolean allocateActivations) {
 		this.neuronCount = neuronCount;
-		this.adjacenceMat = new boolean[neuronCount][neuronCount];
-		this.weightMat = new float[neuronCount][neuronCount];
-		this.activations = new float[neuronCount];
-		
-		this.getInputNeuronsCache = new HashMap<Integer, List<Integer>>();
-		this.getOutputNeuronCache = new HashMap<Integer, List<Integer>>();
+		if (allocateMatrices) {
+			this.adjacenceMat = new boolean[neuronCount][neuronCount];
+			this.weightMat = new float[neuronCount][neuronCount];
+			this.inputRows = new int[neuronCount][];
+			this.outputRows = new int[neuronCount][];
+			this.inputViews = new int[neuronCount][];
+			this.outputViews = new int[neuronCount][];
+			this.inDegree = new int[neuronCount];
+			this.outDegree = new int[neuronCount];
+			Arrays.fill(inputRows, NO_NEURONS);
+			Arrays.fill(outputRows, NO_NEURONS);
+			this.inputNeuronCount = neuronCount;
+			this.editFrom = new int[MIN_EDITS];
+			this.editTo = new int[MIN_EDITS];
+			this.editConnect = new boolean[MIN_EDITS];
+		}
+		if (allocateActivations) {
+			this.activations = new float[neuronCount];
+		}
 	}
 
 	@Override
@@ -36,18 +70,75 @@ public class NNet implements NN {
 
 	@Override
 	public void connect(int neuron1, int neuron2, float weight) {
+		boolean wasConnected = adjacenceMat[neuron1][neuron2];
 		adjacenceMat[neuron1][neuron2] = true;
 		weightMat[neuron1][neuron2] = weight;
-		
-		this.clearCaches();
+
+		if (!wasConnected) {
+			outDegree[neuron1]++;
+			if (inDegree[neuron2]++ == 0) {
+				inputNeuronCount--;
+				inputNeuronsView = null;
+			}
+			edited(neuron1, neuron2, true);
+		}
 	}
 
 	@Override
 	public void disconnect(int neuron1, int neuron2) {
+		boolean wasConnected = adjacenceMat[neuron1][neuron2];
 		adjacenceMat[neuron1][neuron2] = false;
 		weightMat[neuron1][neuron2] = 0;
-		
-		this.clearCaches();
+
+		if (wasConnected) {
+			outDegree[neuron1]--;
+			if (--inDegree[neuron2] == 0) {
+				inputNeuronCount++;
+				inputNeuronsView = null;
+			}
+			edited(neuron1, neuron2, false);
+		}
+	}
+
+	/**
+	 * Starts a batch of structural edits. Until the matching
+	 * {@link #commitEdits()}, connect and disconnect keep degrees and input
+	 * neurons up to date but only record the change for the neighbour lists,
+	 * which are then merged all at once. Looking up the input or output
+	 * neurons of a neuron during a batch merges the edits recorded so far.
+	 * 
+	 * Batches may be nested; only the outermost commit merges.
+	 */
+	public void beginEdits() {
+		editDepth++;
+	}
+
+	/**
+	 * Ends a batch of structural edits started by {@link #beginEdits()},
+	 * merging all recorded edits into the neighbour lists in
+	 * O(neuronCount + edits + degrees of the neurons touched).
+	 */
+	public void commitEdits() {
+		if (editDepth == 0) {
+			throw new IllegalStateException("No batch of edits to commit");
+		}
+		if (--editDepth == 0) {
+			consolidate();
+		}
+	}
+
+	/**
+	 * Returns the number of neurons connected to given neuron.
+	 */
+	public int inDegree(int neuron) {
+		return inDegree[neuron];
+	}
+
+	/**
+	 * Returns the number of neurons given neuron is connected to.
+	 */
+	public int outDegree(int neuron) {
+		return outDegree[neuron];
 	}
 
 	@Override
@@ -89,69 +180,59 @@ public class NNet implements NN {
 
 	@Override
 	public int[] inputNeurons() {
-		ArrayList<Integer> inputNeurons = new ArrayList<Integer>();
-		for (int i = 0; i < neuronCount; i++) {
-			if (isInputNeuron(i)) {
-				inputNeurons.add(new Integer(i));
+		int[] inputNeurons = inputNeuronsView;
+		if (inputNeurons == null) {
+			inputNeurons = new int[inputNeuronCount];
+			int count = 0;
+			for (int i = 0; i < neuronCount; i++) {
+				if (inDegree[i] == 0) {
+					inputNeurons[count++] = i;
+				}
 			}
+			inputNeuronsView = inputNeurons;
 		}
-		
-		int[] ret = new int[inputNeurons.size()];
-		for (int i = 0; i < ret.length; i++) {
-			ret[i] = (inputNeurons.get(i)).intValue();
-		}
-		return ret;
+		return inputNeurons.clone();
 	}
 
 	@Override
 	public boolean isInputNeuron(int n) {
-		boolean result = true;
-		for (int i = 0; i < neuronCount; i++) {
-			if (adjacenceMat[i][n] == true){
-				result = false;
-				break;
-			}				
-		}
-		return result;
+		return inDegree[n] == 0;
 	}
 
+	/**
+	 * Returns the neurons connected to given neuron in ascending order.
+	 * 
+	 * The returned array is a shared view of the index and must not be modified.
+	 */
 	@Override
 	public int[] getInputNeuronsFor(int neuron) {
-		
-		if(getInputNeuronsCache.containsKey(neuron)){								
-			List<Integer> inputNeurons = getInputNeuronsCache.get(neuron);
-			return toArray(inputNeurons);
+		if (editCount > 0) {
+			consolidate();
 		}
-		
-		List<Integer> inputNeurons = new ArrayList<Integer>();
-		for (int i = 0; i < neuronCount; i++) {
-			if (connected(i, neuron)){
-				inputNeurons.add(new Integer(i));
-			}
+		int[] inputNeurons = inputViews[neuron];
+		if (inputNeurons == null) {
+			inputNeurons = inDegree[neuron] == 0 ? NO_NEURONS : Arrays.copyOf(inputRows[neuron], inDegree[neuron]);
+			inputViews[neuron] = inputNeurons;
 		}
-		getInputNeuronsCache.put(neuron, inputNeurons);
-		
-		return toArray(inputNeurons);
+		return inputNeurons;
 	}
 	
-		
+	/**
+	 * Returns the neurons given neuron is connected to in ascending order.
+	 * 
+	 * The returned array is a shared view of the index and must not be modified.
+	 */
 	@Override
 	public int[] getOutputNeuronsFor(int neuron) {
-		
-		if(getOutputNeuronCache.containsKey(neuron)){
-			List<Integer> outputNeurons = getOutputNeuronCache.get(neuron);
-			return toArray(outputNeurons);
+		if (editCount > 0) {
+			consolidate();
 		}
-		
-		List<Integer> outputNeurons = new ArrayList<Integer>();
-		for (int i = 0; i < neuronCount; i++) {
-			if (connected(neuron, i)){
-				outputNeurons.add(new Integer(i));
-			}
+		int[] outputNeurons = outputViews[neuron];
+		if (outputNeurons == null) {
+			outputNeurons = outDegree[neuron] == 0 ? NO_NEURONS : Arrays.copyOf(outputRows[neuron], outDegree[neuron]);
+			outputViews[neuron] = outputNeurons;
 		}
-		getOutputNeuronCache.put(neuron, outputNeurons);
-		
-		return toArray(outputNeurons);
+		return outputNeurons;
 	}
 
 	@Override
@@ -197,11 +278,18 @@ public class NNet implements NN {
 
 	@Override
 	public float getInputActivation(int neuron) {
+		return getInputActivation(neuron, activations);
+	}
+
+	/**
+	 * Returns the weighted sum of given activations going into given neuron,
+	 * leaving the activations of this net untouched.
+	 */
+	public float getInputActivation(int neuron, float[] activations) {
+		int[] in = getInputNeuronsFor(neuron);
 		float sum = 0;
-		for (int j = 0; j < neuronCount; j++) {
-			if (adjacenceMat[j][neuron]) {
-				sum += weightMat[j][neuron] * getActivation(j);
-			}
+		for (int j = 0; j < in.length; j++) {
+			sum += weightMat[in[j]][neuron] * activations[in[j]];
 		}
 		return sum;
 	}
@@ -247,6 +335,14 @@ public class NNet implements NN {
 		}
 	}
 
+	/**
+	 * Returns the live activation vector of this net, or null if a subclass
+	 * keeps activations elsewhere.
+	 */
+	float[] activationArray() {
+		return activations;
+	}
+
 	public NN copy() {
 		NNet copy = new NNet(neuronCount);
 		for (int i = 0; i < neuronCount; i++) {
@@ -255,34 +351,228 @@ public class NNet implements NN {
 				copy.weightMat[i][j] = weightMat[i][j];
 			}
 		}
+		copy.rebuildIndex();
 		return copy;
 	}
 
 	public static float sigmoid(float val) {
-		return (float) (1 / (1 + Math.pow(2.718, -val)));
+		return ActivationFunctions.SIGMOID.apply(val);
 	}
 
 	public static float tanh(float x) {
-		double powBig = Math.pow(2.718, x);
-		double powSml = Math.pow(2.718, -x);
-		return (float) ((powBig - powSml) / (powBig + powSml));
+		return ActivationFunctions.TANH.apply(x);
 	}
 	
-	public void clearCaches(){	
-		getInputNeuronsCache.clear();
-		getOutputNeuronCache.clear();
+	/**
+	 * Rebuilds the topology index from the adjacency matrix, merging any
+	 * pending edits. Not needed after connect or disconnect, which keep the
+	 * index up to date.
+	 */
+	public void clearCaches() {
+		if (inputRows == null) {
+			return;
+		}
+		rebuildIndex();
 	}
-	
-	private int[] toArray(List<Integer> listOfIntegers){
-		int[] result = new int[listOfIntegers.size()];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = listOfIntegers.get(i).intValue();
-		}			
-		return result;
-	}
-		
-	private Map<Integer, List<Integer>> getInputNeuronsCache;
-	private Map<Integer, List<Integer>> getOutputNeuronCache;
+
+	/**
+	 * Sets up degrees, input neurons and neighbour lists from scratch, in
+	 * O(neuronCount^2).
+	 */
+	private void rebuildIndex() {
+		Arrays.fill(inDegree, 0);
+		for (int i = 0; i < neuronCount; i++) {
+			boolean[] row = adjacenceMat[i];
+			int count = 0;
+			for (int j = 0; j < neuronCount; j++) {
+				if (row[j]) {
+					count++;
+					inDegree[j]++;
+				}
+			}
+			outDegree[i] = count;
+			outputRows[i] = new int[count];
+			count = 0;
+			for (int j = 0; j < neuronCount; j++) {
+				if (row[j]) {
+					outputRows[i][count++] = j;
+				}
+			}
+		}
+		int[] fill = new int[neuronCount];
+		inputNeuronCount = 0;
+		for (int j = 0; j < neuronCount; j++) {
+			inputRows[j] = new int[inDegree[j]];
+			if (inDegree[j] == 0) {
+				inputNeuronCount++;
+			}
+		}
+		for (int i = 0; i < neuronCount; i++) {
+			int[] out = outputRows[i];
+			for (int k = 0; k < out.length; k++) {
+				inputRows[out[k]][fill[out[k]]++] = i;
+			}
+		}
+		Arrays.fill(inputViews, null);
+		Arrays.fill(outputViews, null);
+		inputNeuronsView = null;
+		editCount = 0;
+	}
+
+	/**
+	 * Updates the neighbour lists for a change of the connection from neuron1
+	 * to neuron2, or records the change while a batch of edits is open.
+	 */
+	private void edited(int neuron1, int neuron2, boolean connected) {
+		if (editDepth > 0) {
+			if (editCount == editFrom.length) {
+				editFrom = Arrays.copyOf(editFrom, 2 * editCount);
+				editTo = Arrays.copyOf(editTo, 2 * editCount);
+				editConnect = Arrays.copyOf(editConnect, 2 * editCount);
+			}
+			editFrom[editCount] = neuron1;
+			editTo[editCount] = neuron2;
+			editConnect[editCount++] = connected;
+			return;
+		}
+		if (connected) {
+			insert(outputRows, outDegree[neuron1] - 1, neuron1, neuron2);
+			insert(inputRows, inDegree[neuron2] - 1, neuron2, neuron1);
+		} else {
+			remove(outputRows, outDegree[neuron1] + 1, neuron1, neuron2);
+			remove(inputRows, inDegree[neuron2] + 1, neuron2, neuron1);
+		}
+		outputViews[neuron1] = null;
+		inputViews[neuron2] = null;
+	}
+
+	/**
+	 * Inserts given value into the sorted first length entries of the given
+	 * row, growing it if full.
+	 */
+	private static void insert(int[][] rows, int length, int row, int value) {
+		int[] r = rows[row];
+		int pos = -Arrays.binarySearch(r, 0, length, value) - 1;
+		if (length == r.length) {
+			r = Arrays.copyOf(r, Math.max(4, 2 * length));
+			rows[row] = r;
+		}
+		System.arraycopy(r, pos, r, pos + 1, length - pos);
+		r[pos] = value;
+	}
+
+	/**
+	 * Removes given value from the sorted first length entries of the given
+	 * row.
+	 */
+	private static void remove(int[][] rows, int length, int row, int value) {
+		int[] r = rows[row];
+		int pos = Arrays.binarySearch(r, 0, length, value);
+		System.arraycopy(r, pos + 1, r, pos, length - pos - 1);
+	}
+
+	/**
+	 * Merges all recorded edits into the neighbour lists.
+	 */
+	private void consolidate() {
+		if (editCount == 0) {
+			return;
+		}
+		int[] identity = new int[editCount];
+		for (int i = 0; i < editCount; i++) {
+			identity[i] = i;
+		}
+		// order edits by (from, to) for the output rows and by (to, from) for the input rows
+		int[] byFrom = countingSort(countingSort(identity, editTo), editFrom);
+		int[] byTo = countingSort(countingSort(identity, editFrom), editTo);
+		mergeRows(byFrom, editFrom, editTo, outputRows, outputViews, outDegree, false);
+		mergeRows(byTo, editTo, editFrom, inputRows, inputViews, inDegree, true);
+		editCount = 0;
+	}
+
+	/**
+	 * Rebuilds each row named by the keys of given ordered edits from its old
+	 * entries and the values of its edits, keeping those still connected
+	 * according to the adjacency matrix.
+	 */
+	private void mergeRows(int[] order, int[] keys, int[] values, int[][] rows, int[][] views, int[] degrees,
+			boolean incoming) {
+		int p = 0;
+		while (p < order.length) {
+			int row = keys[order[p]];
+			int end = p;
+			while (end < order.length && keys[order[end]] == row) {
+				end++;
+			}
+			// each recorded edit changed the degree by one
+			int oldLength = degrees[row];
+			for (int q = p; q < end; q++) {
+				oldLength += editConnect[order[q]] ? -1 : 1;
+			}
+			int[] old = rows[row];
+			int[] merged = new int[degrees[row]];
+			int count = 0;
+			int e = 0;
+			while (e < oldLength || p < end) {
+				int a = e < oldLength ? old[e] : Integer.MAX_VALUE;
+				int b = p < end ? values[order[p]] : Integer.MAX_VALUE;
+				int next = Math.min(a, b);
+				if (a == next) {
+					e++;
+				}
+				while (p < end && values[order[p]] == next) {
+					p++;
+				}
+				if (incoming ? adjacenceMat[next][row] : adjacenceMat[row][next]) {
+					merged[count++] = next;
+				}
+			}
+			rows[row] = merged;
+			views[row] = null;
+		}
+	}
+
+	/**
+	 * Returns given permutation of edits stably re-ordered by the given neuron
+	 * keys.
+	 */
+	private int[] countingSort(int[] perm, int[] keys) {
+		int[] count = new int[neuronCount + 1];
+		for (int i = 0; i < perm.length; i++) {
+			count[keys[perm[i]] + 1]++;
+		}
+		for (int i = 0; i < neuronCount; i++) {
+			count[i + 1] += count[i];
+		}
+		int[] sorted = new int[perm.length];
+		for (int i = 0; i < perm.length; i++) {
+			sorted[count[keys[perm[i]]]++] = perm[i];
+		}
+		return sorted;
+	}
+
+	private static final int[] NO_NEURONS = new int[0];
+	private static final int MIN_EDITS = 256;
+
+	// sorted neighbour lists; the first inDegree/outDegree entries are valid, less those of pending edits
+	private int[][] inputRows;
+	private int[][] outputRows;
+	private int[] inDegree;
+	private int[] outDegree;
+
+	// exact-length copies of the neighbour lists handed out, dropped on change
+	private int[][] inputViews;
+	private int[][] outputViews;
+
+	private int inputNeuronCount;
+	private int[] inputNeuronsView;
+
+	// edits recorded during a batch, not yet merged into the neighbour lists
+	private int editDepth;
+	private int[] editFrom;
+	private int[] editTo;
+	private boolean[] editConnect;
+	private int editCount;
 	
 	private boolean[][] adjacenceMat;
 	private float[][] weightMat;
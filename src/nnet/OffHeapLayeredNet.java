@@ -0,0 +1,303 @@
+package nnet;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link LayeredNet} keeping its weight blocks and neuron activations in
+ * direct memory outside the Java heap, so that heap size and garbage
+ * collection pauses do not grow with the size of the model.
+ *
+ * Weights are laid out like the blocks of a DENSE net: one row-major block per
+ * pair of adjacent layers, each limited to 2 GB. All operations of
+ * {@link LayeredNet} and the back-propagation of {@link MyBackpropagation}
+ * work on it.
+ *
+ * After {@link #close()} the net must not be used anymore: every later access
+ * throws IllegalStateException. The off-heap memory is freed once the garbage
+ * collector notices the buffers are gone, so that threads still evaluating the
+ * net with a context of their own never read freed memory.
+ */
+public class OffHeapLayeredNet extends LayeredNet implements Closeable {
+
+	public OffHeapLayeredNet(int neuronCount, int[] layers) {
+		this(neuronCount, layers, 0);
+	}
+
+	public OffHeapLayeredNet(int neuronCount, int[] layers, float initialWeight) {
+		super(layers, OFF_HEAP);
+		if (neuronCount != neuronCount()) {
+			throw new IllegalArgumentException("Number of neurons ("+neuronCount+") does not match total number in layers ("+neuronCount()+")!");
+		}
+		FloatBuffer[] weights = new FloatBuffer[layers.length - 1];
+		ByteBuffer[] buffers = new ByteBuffer[layers.length];
+		int maxLayerSize = 0;
+		for (int l = 0; l < layers.length; l++) {
+			maxLayerSize = Math.max(maxLayerSize, layers[l]);
+		}
+		for (int l = 0; l < layers.length - 1; l++) {
+			long bytes = 4L * layers[l] * layers[l + 1];
+			if (bytes > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Weight block " + l + " exceeds 2 GB");
+			}
+			buffers[l] = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+			weights[l] = buffers[l].asFloatBuffer();
+			if (initialWeight != 0) {
+				for (int i = 0; i < weights[l].capacity(); i++) {
+					weights[l].put(i, initialWeight);
+				}
+			}
+		}
+		buffers[layers.length - 1] = ByteBuffer.allocateDirect(4 * neuronCount).order(ByteOrder.nativeOrder());
+		this.sums = new float[maxLayerSize];
+		this.activations = buffers[layers.length - 1].asFloatBuffer();
+		this.weights = weights;
+		this.buffers = buffers;
+	}
+
+	/**
+	 * Drops the off-heap memory of this net, leaving it to the garbage
+	 * collector to free.
+	 */
+	@Override
+	public void close() {
+		buffers = null;
+		weights = null;
+		activations = null;
+	}
+
+	public boolean isClosed() {
+		return buffers == null;
+	}
+
+	/**
+	 * Returns the bytes of off-heap memory held by this net.
+	 */
+	public long offHeapBytes() {
+		ByteBuffer[] buffers = this.buffers;
+		long bytes = 0;
+		if (buffers != null) {
+			for (int i = 0; i < buffers.length; i++) {
+				bytes += buffers[i].capacity();
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public void connect(int neuron1, int neuron2, float weight) {
+		if (layerOf(neuron2) != layerOf(neuron1) + 1) {
+			throw new UnsupportedOperationException("Off-heap layer storage only connects neurons of adjacent layers");
+		}
+		weights(layerOf(neuron1)).put(index(neuron1, neuron2), weight);
+	}
+
+	@Override
+	public float getWeight(int n1, int n2) {
+		if (layerOf(n2) != layerOf(n1) + 1) {
+			return 0;
+		}
+		return weights(layerOf(n1)).get(index(n1, n2));
+	}
+
+	@Override
+	public void setWeight(int n1, int n2, float w) {
+		if (layerOf(n2) == layerOf(n1) + 1) {
+			weights(layerOf(n1)).put(index(n1, n2), w);
+		}
+	}
+
+	@Override
+	public void randomlyInitWeights(float min, float max) {
+		float interval = max - min;
+		for (int l = 0; l < layerCount() - 1; l++) {
+			FloatBuffer w = weights(l);
+			for (int i = 0; i < w.capacity(); i++) {
+				w.put(i, min + (float) Math.random() * interval);
+			}
+		}
+	}
+
+	@Override
+	public void clearActivations() {
+		FloatBuffer act = activations();
+		for (int i = 0; i < act.capacity(); i++) {
+			act.put(i, 0);
+		}
+	}
+
+	@Override
+	public void activate(int neuron, float activation) {
+		activations().put(neuron, activation);
+	}
+
+	@Override
+	public float getActivation(int neuron) {
+		return activations().get(neuron);
+	}
+
+	@Override
+	public float getInputActivation(int neuron) {
+		int layer = layerOf(neuron);
+		if (layer == 0) {
+			return 0;
+		}
+		FloatBuffer w = weights(layer - 1);
+		FloatBuffer act = activations();
+		int cols = layerSize(layer);
+		int col = neuron - layerOffset(layer);
+		int prevOffset = layerOffset(layer - 1);
+		float sum = 0;
+		for (int i = 0; i < layerSize(layer - 1); i++) {
+			sum += w.get(i * cols + col) * act.get(prevOffset + i);
+		}
+		return sum;
+	}
+
+	@Override
+	public float getInputActivation(int neuron, float[] activations) {
+		int layer = layerOf(neuron);
+		if (layer == 0) {
+			return 0;
+		}
+		FloatBuffer w = weights(layer - 1);
+		int cols = layerSize(layer);
+		int col = neuron - layerOffset(layer);
+		int prevOffset = layerOffset(layer - 1);
+		float sum = 0;
+		for (int i = 0; i < layerSize(layer - 1); i++) {
+			sum += w.get(i * cols + col) * activations[prevOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	void computeLayer(int layer, float[] act) {
+		FloatBuffer w = weights(layer - 1);
+		int rows = layerSize(layer - 1);
+		int cols = layerSize(layer);
+		int prevOffset = layerOffset(layer - 1);
+		int offset = layerOffset(layer);
+		for (int j = offset; j < offset + cols; j++) {
+			act[j] = 0;
+		}
+		for (int i = 0; i < rows; i++) {
+			float a = act[prevOffset + i];
+			int base = i * cols;
+			for (int j = 0; j < cols; j++) {
+				act[offset + j] += w.get(base + j) * a;
+			}
+		}
+	}
+
+	/**
+	 * Returns the output vector for given input vector, evaluating each layer
+	 * exactly once and keeping all activations off-heap.
+	 */
+	@Override
+	public float[] feedForward(float[] input, boolean doSigmoidActivation) {
+		forward(input, doSigmoidActivation);
+		int last = layerCount() - 1;
+		float[] outVals = new float[layerSize(last)];
+		copyOutput(outVals);
+		return outVals;
+	}
+
+	@Override
+	public float[] output(float[] input, float[] out) {
+		forward(input, true);
+		copyOutput(out);
+		return out;
+	}
+
+	/**
+	 * Sums each layer in a heap scratch array and writes it back to the
+	 * off-heap activations with one bulk put.
+	 */
+	private void forward(float[] input, boolean doSigmoidActivation) {
+		FloatBuffer act = activations().duplicate();
+		act.clear();
+		act.put(input, 0, layerSize(0));
+
+		int last = layerCount() - 1;
+		ActivationFunction function = getActivationFunction();
+		for (int l = 1; l <= last; l++) {
+			FloatBuffer w = weights(l - 1);
+			int rows = layerSize(l - 1);
+			int cols = layerSize(l);
+			int prevOffset = layerOffset(l - 1);
+			Arrays.fill(sums, 0, cols, 0);
+			for (int i = 0; i < rows; i++) {
+				float a = act.get(prevOffset + i);
+				int base = i * cols;
+				for (int j = 0; j < cols; j++) {
+					sums[j] += w.get(base + j) * a;
+				}
+			}
+			if (doSigmoidActivation && l < last) {
+				function.apply(sums, 0, cols);
+			}
+			act.position(layerOffset(l));
+			act.put(sums, 0, cols);
+		}
+	}
+
+	private void copyOutput(float[] out) {
+		FloatBuffer act = activations();
+		int last = layerCount() - 1;
+		int offset = layerOffset(last);
+		for (int i = 0; i < layerSize(last); i++) {
+			out[i] = act.get(offset + i);
+		}
+	}
+
+	/**
+	 * Returns an off-heap copy of this net.
+	 */
+	@Override
+	public NN copy() {
+		int[] layers = new int[layerCount()];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = layerSize(l);
+		}
+		OffHeapLayeredNet copy = new OffHeapLayeredNet(neuronCount(), layers);
+		copy.setActivationFunction(getActivationFunction());
+		for (int l = 0; l < layers.length - 1; l++) {
+			FloatBuffer from = weights(l).duplicate();
+			from.clear();
+			FloatBuffer to = copy.weights(l).duplicate();
+			to.clear();
+			to.put(from);
+		}
+		return copy;
+	}
+
+	private FloatBuffer weights(int layer) {
+		FloatBuffer[] w = weights;
+		if (w == null) {
+			throw new IllegalStateException("Off-heap net is closed");
+		}
+		return w[layer];
+	}
+
+	private FloatBuffer activations() {
+		FloatBuffer act = activations;
+		if (act == null) {
+			throw new IllegalStateException("Off-heap net is closed");
+		}
+		return act;
+	}
+
+	private int index(int n1, int n2) {
+		int layer = layerOf(n1);
+		return (n1 - layerOffset(layer)) * layerSize(layer + 1) + (n2 - layerOffset(layer + 1));
+	}
+
+	private final float[] sums;
+	private volatile ByteBuffer[] buffers;
+	private volatile FloatBuffer[] weights;
+	private volatile FloatBuffer activations;
+}
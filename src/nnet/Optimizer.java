@@ -0,0 +1,20 @@
+package nnet;
+
+/**
+ * Turns the accumulated weight deltas of a batch into a weight update, for
+ * example with momentum or per-weight adaptive step sizes. See
+ * {@link Optimizers}.
+ * 
+ * An optimizer keeps state per weight and belongs to a single net; create a
+ * new one for each net trained.
+ */
+public interface Optimizer {
+
+	/**
+	 * Updates the weight block between given layer and the next one from given
+	 * deltas, in a single pass over both. The deltas point in the direction the
+	 * weights should move, as in {@link MyBackpropagation}; deltaScale times
+	 * them is the mean delta per sample.
+	 */
+	void update(int layer, float[] weights, float[] deltas, float deltaScale, float learnRate);
+}
@@ -0,0 +1,189 @@
+package nnet;
+
+/**
+ * Plain, momentum and adaptive {@link Optimizer}s. Each keeps its per-weight
+ * state in float arrays of the same layout as the weight block, allocated on
+ * the first update of a layer, and updates weights and state in one fused
+ * pass per layer.
+ * 
+ * With d the mean delta of a weight w and lr the learning rate:
+ * 
+ * SGD: w += lr * d.
+ * Momentum: v = mu * v + d, w += lr * v.
+ * Nesterov: v = mu * v + d, w += lr * (d + mu * v).
+ * RMSProp: s = rho * s + (1 - rho) * d^2, w += lr * d / (sqrt(s) + eps).
+ * Adam: m = b1 * m + (1 - b1) * d, v = b2 * v + (1 - b2) * d^2, w += lr *
+ * m' / (sqrt(v') + eps), where m' and v' are m and v corrected for their bias
+ * towards 0 in early steps.
+ * 
+ * Adaptive optimizers need much smaller learning rates than SGD, typically
+ * around 0.001.
+ */
+public final class Optimizers {
+
+	private Optimizers() {
+	}
+
+	public static Optimizer sgd() {
+		return new Sgd();
+	}
+
+	public static Optimizer momentum(float momentum) {
+		return new Momentum(momentum, false);
+	}
+
+	public static Optimizer nesterov(float momentum) {
+		return new Momentum(momentum, true);
+	}
+
+	public static Optimizer rmsProp(float decay) {
+		return new RmsProp(decay, 1e-8f);
+	}
+
+	/**
+	 * Returns Adam with the usual parameters b1 = 0.9, b2 = 0.999 and eps =
+	 * 1e-8.
+	 */
+	public static Optimizer adam() {
+		return new Adam(0.9f, 0.999f, 1e-8f);
+	}
+
+	public static Optimizer adam(float beta1, float beta2, float epsilon) {
+		return new Adam(beta1, beta2, epsilon);
+	}
+
+	private static final class Sgd implements Optimizer {
+
+		public void update(int layer, float[] weights, float[] deltas, float deltaScale, float learnRate) {
+			Kernels.addScaled(deltas, learnRate * deltaScale, weights, weights.length);
+		}
+	}
+
+	private static final class Momentum implements Optimizer {
+
+		Momentum(float momentum, boolean nesterov) {
+			this.momentum = momentum;
+			this.nesterov = nesterov;
+		}
+
+		public void update(int layer, float[] weights, float[] deltas, float deltaScale, float learnRate) {
+			float[] v = state(layer, weights.length);
+			float mu = momentum;
+			if (nesterov) {
+				for (int i = 0; i < weights.length; i++) {
+					float d = deltas[i] * deltaScale;
+					float vi = mu * v[i] + d;
+					v[i] = vi;
+					weights[i] += learnRate * (d + mu * vi);
+				}
+			} else {
+				for (int i = 0; i < weights.length; i++) {
+					float vi = mu * v[i] + deltas[i] * deltaScale;
+					v[i] = vi;
+					weights[i] += learnRate * vi;
+				}
+			}
+		}
+
+		private float[] state(int layer, int size) {
+			if (velocity == null || layer >= velocity.length) {
+				velocity = grow(velocity, layer + 1);
+			}
+			if (velocity[layer] == null) {
+				velocity[layer] = new float[size];
+			}
+			return velocity[layer];
+		}
+
+		private final float momentum;
+		private final boolean nesterov;
+		private float[][] velocity;
+	}
+
+	private static final class RmsProp implements Optimizer {
+
+		RmsProp(float decay, float epsilon) {
+			this.decay = decay;
+			this.epsilon = epsilon;
+		}
+
+		public void update(int layer, float[] weights, float[] deltas, float deltaScale, float learnRate) {
+			if (meanSquares == null || layer >= meanSquares.length) {
+				meanSquares = grow(meanSquares, layer + 1);
+			}
+			if (meanSquares[layer] == null) {
+				meanSquares[layer] = new float[weights.length];
+			}
+			float[] s = meanSquares[layer];
+			float rho = decay;
+			for (int i = 0; i < weights.length; i++) {
+				float d = deltas[i] * deltaScale;
+				float si = rho * s[i] + (1 - rho) * d * d;
+				s[i] = si;
+				weights[i] += learnRate * d / ((float) Math.sqrt(si) + epsilon);
+			}
+		}
+
+		private final float decay;
+		private final float epsilon;
+		private float[][] meanSquares;
+	}
+
+	private static final class Adam implements Optimizer {
+
+		Adam(float beta1, float beta2, float epsilon) {
+			this.beta1 = beta1;
+			this.beta2 = beta2;
+			this.epsilon = epsilon;
+		}
+
+		public void update(int layer, float[] weights, float[] deltas, float deltaScale, float learnRate) {
+			if (moments == null || layer >= moments.length) {
+				moments = grow(moments, layer + 1);
+				squares = grow(squares, layer + 1);
+				long[] t = new long[layer + 1];
+				if (steps != null) {
+					System.arraycopy(steps, 0, t, 0, steps.length);
+				}
+				steps = t;
+			}
+			if (moments[layer] == null) {
+				moments[layer] = new float[weights.length];
+				squares[layer] = new float[weights.length];
+			}
+			float[] m = moments[layer];
+			float[] v = squares[layer];
+			long t = ++steps[layer];
+
+			// bias correction folded into step size and epsilon
+			double correction2 = Math.sqrt(1 - Math.pow(beta2, t));
+			float step = (float) (learnRate * correction2 / (1 - Math.pow(beta1, t)));
+			float eps = (float) (epsilon * correction2);
+			float b1 = beta1;
+			float b2 = beta2;
+			for (int i = 0; i < weights.length; i++) {
+				float d = deltas[i] * deltaScale;
+				float mi = b1 * m[i] + (1 - b1) * d;
+				float vi = b2 * v[i] + (1 - b2) * d * d;
+				m[i] = mi;
+				v[i] = vi;
+				weights[i] += step * mi / ((float) Math.sqrt(vi) + eps);
+			}
+		}
+
+		private final float beta1;
+		private final float beta2;
+		private final float epsilon;
+		private float[][] moments;
+		private float[][] squares;
+		private long[] steps;
+	}
+
+	private static float[][] grow(float[][] state, int length) {
+		float[][] grown = new float[length][];
+		if (state != null) {
+			System.arraycopy(state, 0, grown, 0, state.length);
+		}
+		return grown;
+	}
+}
@@ -0,0 +1,260 @@
+package nnet;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import nnet.data.Batch;
+import nnet.data.StreamingDataset;
+import nnet.metrics.MetricsRecorder;
+
+/**
+ * Data-parallel mini-batch training of a dense {@link LayeredNet}.
+ * 
+ * Each batch is split into one shard per thread. Every shard computes its
+ * gradients in a workspace of its own against the weights of the net, which
+ * stay untouched until all shards are done. Gradients are then summed up
+ * pairwise along a binary tree of shards and applied in a single update.
+ * 
+ * Shard boundaries and the reduction tree only depend on the batch and the
+ * number of threads, and samples are shuffled with a seeded random generator,
+ * so results are reproducible for a fixed seed and thread count.
+ */
+public class ParallelTrainer implements Trainer {
+
+	public ParallelTrainer(LayeredNet net, int batchSize, int threads, long seed) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.net = net;
+		this.batchSize = batchSize;
+		this.shards = Math.min(threads, batchSize);
+		this.pool = new ForkJoinPool(threads);
+		this.random = new Random(seed);
+
+		int shardCapacity = (batchSize + shards - 1) / shards;
+		this.workspaces = new BatchWorkspace[shards];
+		for (int i = 0; i < shards; i++) {
+			workspaces[i] = new BatchWorkspace(net, shardCapacity);
+		}
+		this.errors = new float[shards];
+		this.metrics = new MetricsRecorder(net.layerCount() - 1);
+	}
+
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * Sets the optimizer turning the mean weight deltas of each batch into a
+	 * weight update, or null for the plain update of {@link MyBackpropagation},
+	 * which is the default.
+	 */
+	public void setOptimizer(Optimizer optimizer) {
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * Returns the recorder collecting the metrics of this trainer, to add
+	 * listeners to. Each call of trainEpoch makes one epoch. The forward time
+	 * of a batch is that of its slowest shard, the backward time covers the
+	 * rest of the parallel part including the reduction of the gradients.
+	 */
+	public MetricsRecorder getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Trains on all given samples once, in shuffled order, and returns the
+	 * total error, i.e. the sum over all samples of the mean squared output
+	 * error.
+	 */
+	public float trainEpoch(float[][] inputs, float[][] targets, float learnRate) {
+		int[] order = new int[inputs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+
+		metrics.startEpoch();
+		float totalError = 0;
+		for (int from = 0; from < order.length; from += batchSize) {
+			totalError += trainBatch(inputs, targets, order, from, Math.min(from + batchSize, order.length), learnRate);
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	/**
+	 * Trains on one epoch of given streaming data set, one weight update per
+	 * batch delivered, and returns the total error. Samples are trained in the
+	 * order the data set delivers them.
+	 */
+	public float trainEpoch(StreamingDataset data, float learnRate) throws IOException {
+		metrics.startEpoch();
+		float totalError = 0;
+		for (Batch batch = data.next(); batch != null; batch = data.next()) {
+			for (int from = 0; from < batch.size(); from += batchSize) {
+				int to = Math.min(from + batchSize, batch.size());
+				totalError += trainBatch(batch.inputs(), batch.targets(), null, from, to, learnRate);
+			}
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	/**
+	 * Trains on one block of samples, applying a single weight update, and
+	 * returns the total error of the block.
+	 */
+	public float trainBatch(float[][] inputs, float[][] targets, float learnRate) {
+		return trainBatch(inputs, targets, null, 0, inputs.length, learnRate);
+	}
+
+	/**
+	 * Trains on samples order[from] to order[to - 1] (or from to to - 1 if no
+	 * order is given), at most batchSize many, applying a single weight update.
+	 * Returns the total error of the block.
+	 */
+	public float trainBatch(float[][] inputs, float[][] targets, int[] order, int from, int to, float learnRate) {
+		if (to - from > batchSize) {
+			throw new IllegalArgumentException("Batch of " + (to - from) + " exceeds batch size " + batchSize);
+		}
+		long start = System.nanoTime();
+		pool.invoke(new ShardTask(inputs, targets, order, from, to, 0, shards));
+		long computed = System.nanoTime();
+		float scale = learnRate / (to - from);
+		boolean sampling = metrics.isSampling();
+		if (sampling && optimizer == null) {
+			for (int l = 0; l < net.layerCount() - 1; l++) {
+				metrics.recordUpdateMagnitude(l, workspaces[0].updateMagnitude(l, scale));
+			}
+		} else if (sampling) {
+			workspaces[0].saveWeights();
+		}
+		long updateStart = System.nanoTime();
+		if (optimizer == null) {
+			workspaces[0].apply(scale);
+		} else {
+			workspaces[0].apply(optimizer, 1f / (to - from), learnRate);
+		}
+		long end = System.nanoTime();
+		if (sampling && optimizer != null) {
+			for (int l = 0; l < net.layerCount() - 1; l++) {
+				metrics.recordUpdateMagnitude(l, workspaces[0].changeMagnitude(l));
+			}
+		}
+		trainingNanos += end - start;
+		trainedSamples += to - from;
+
+		long forwardNanos = 0;
+		for (int i = 0; i < shards; i++) {
+			forwardNanos = Math.max(forwardNanos, workspaces[i].forwardNanos);
+		}
+		forwardNanos = Math.min(forwardNanos, computed - start);
+		metrics.recordBatch(to - from, errors[0], forwardNanos, computed - start - forwardNanos, end - updateStart);
+		return errors[0];
+	}
+
+	public long getTrainedSamples() {
+		return trainedSamples;
+	}
+
+	/**
+	 * Returns the number of samples trained per second so far.
+	 */
+	public double samplesPerSecond() {
+		return trainingNanos == 0 ? 0 : trainedSamples * 1e9 / trainingNanos;
+	}
+
+	public void resetStatistics() {
+		trainedSamples = 0;
+		trainingNanos = 0;
+	}
+
+	/**
+	 * Stops the worker threads. The trainer cannot be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Computes the gradients of shards lo (inclusive) to hi (exclusive) and
+	 * leaves their sum in the workspace of shard lo.
+	 */
+	@SuppressWarnings("serial")
+	private class ShardTask extends RecursiveAction {
+
+		ShardTask(float[][] inputs, float[][] targets, int[] order, int from, int to, int lo, int hi) {
+			this.inputs = inputs;
+			this.targets = targets;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo == 1) {
+				int count = to - from;
+				int shardFrom = from + (int) ((long) count * lo / shards);
+				int shardTo = from + (int) ((long) count * hi / shards);
+				if (shardFrom == shardTo) {
+					// fewer samples than shards, contribute nothing
+					errors[lo] = 0;
+					workspaces[lo].forwardNanos = 0;
+					workspaces[lo].clearGradients();
+				} else {
+					errors[lo] = workspaces[lo].compute(inputs, targets, order, shardFrom, shardTo);
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			ShardTask left = new ShardTask(inputs, targets, order, from, to, lo, mid);
+			ShardTask right = new ShardTask(inputs, targets, order, from, to, mid, hi);
+			invokeAll(left, right);
+			workspaces[lo].addGradients(workspaces[mid]);
+			errors[lo] += errors[mid];
+		}
+
+		private final float[][] inputs;
+		private final float[][] targets;
+		private final int[] order;
+		private final int from;
+		private final int to;
+		private final int lo;
+		private final int hi;
+	}
+
+	private final LayeredNet net;
+	private final int batchSize;
+	private final int shards;
+	private final MetricsRecorder metrics;
+	private final ForkJoinPool pool;
+	private final Random random;
+	private final BatchWorkspace[] workspaces;
+	private final float[] errors;
+	private Optimizer optimizer;
+	private long trainedSamples;
+	private long trainingNanos;
+}
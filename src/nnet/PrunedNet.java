@@ -0,0 +1,202 @@
+package nnet;
+
+import java.util.Arrays;
+
+/**
+ * A layered net for inference keeping only the connections with a non-zero
+ * weight, for nets thinned out by {@link Pruning}.
+ *
+ * The connections into each layer are stored column by column: for every
+ * neuron, the indices of the neurons of the previous layer it is connected
+ * to, in ascending order, and the corresponding weights, all in two
+ * contiguous arrays per layer. Evaluating a layer therefore takes time
+ * proportional to its connections rather than to the product of the layer
+ * sizes.
+ *
+ * Since weighted sums are added up in the same order as by the dense kernels,
+ * and missing connections only leave out zero terms, the outputs are the same
+ * as those of the net it was made from, as long as activations are finite.
+ * Like {@link FrozenNet}, a pruned net is immutable and may be evaluated by
+ * any number of threads at once, each with a context of its own.
+ */
+public class PrunedNet {
+
+	private PrunedNet(int[] layers, int[][] columnStarts, int[][] rowIndices, float[][] weights,
+			ActivationFunction activationFunction) {
+		this.layers = layers;
+		this.columnStarts = columnStarts;
+		this.rowIndices = rowIndices;
+		this.weights = weights;
+		this.activationFunction = activationFunction;
+		this.layerOffsets = new int[layers.length];
+		int counter = 0;
+		for (int l = 0; l < layers.length; l++) {
+			layerOffsets[l] = counter;
+			counter += layers[l];
+		}
+		this.neuronCount = counter;
+	}
+
+	/**
+	 * Returns a copy of the non-zero weights of given net. Nets with MATRIX
+	 * storage must not have connections other than between adjacent layers.
+	 */
+	public static PrunedNet of(LayeredNet net) {
+		FrozenNet frozen = FrozenNet.of(net);
+		int[] layers = new int[frozen.layerCount()];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = frozen.layerSize(l);
+		}
+
+		int[][] columnStarts = new int[layers.length - 1][];
+		int[][] rowIndices = new int[layers.length - 1][];
+		float[][] weights = new float[layers.length - 1][];
+		for (int l = 0; l < weights.length; l++) {
+			int rows = layers[l];
+			int cols = layers[l + 1];
+			int[] starts = new int[cols + 1];
+			for (int j = 0; j < cols; j++) {
+				int count = 0;
+				for (int i = 0; i < rows; i++) {
+					if (frozen.getWeight(l, i, j) != 0) {
+						count++;
+					}
+				}
+				starts[j + 1] = starts[j] + count;
+			}
+			int[] rowIndex = new int[starts[cols]];
+			float[] w = new float[starts[cols]];
+			for (int j = 0; j < cols; j++) {
+				int k = starts[j];
+				for (int i = 0; i < rows; i++) {
+					float weight = frozen.getWeight(l, i, j);
+					if (weight != 0) {
+						rowIndex[k] = i;
+						w[k++] = weight;
+					}
+				}
+			}
+			columnStarts[l] = starts;
+			rowIndices[l] = rowIndex;
+			weights[l] = w;
+		}
+		return new PrunedNet(layers, columnStarts, rowIndices, weights, frozen.getActivationFunction());
+	}
+
+	public int neuronCount() {
+		return neuronCount;
+	}
+
+	public int layerCount() {
+		return layers.length;
+	}
+
+	public int layerSize(int layer) {
+		return layers[layer];
+	}
+
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Returns the number of connections kept.
+	 */
+	public int connectionCount() {
+		int count = 0;
+		for (int l = 0; l < weights.length; l++) {
+			count += weights[l].length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the fraction of possible connections between adjacent layers
+	 * that were removed.
+	 */
+	public float sparsity() {
+		long total = 0;
+		for (int l = 0; l < weights.length; l++) {
+			total += (long) layers[l] * layers[l + 1];
+		}
+		return total == 0 ? 0 : 1 - connectionCount() / (float) total;
+	}
+
+	/**
+	 * Returns the weight from neuron i of given layer to neuron j of the next
+	 * layer, 0 if they are not connected.
+	 */
+	public float getWeight(int layer, int i, int j) {
+		int[] rowIndex = rowIndices[layer];
+		int from = columnStarts[layer][j];
+		int to = columnStarts[layer][j + 1];
+		int k = Arrays.binarySearch(rowIndex, from, to, i);
+		return k >= 0 ? weights[layer][k] : 0;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the weights, their row indices and
+	 * the column starts.
+	 */
+	public long weightBytes() {
+		long bytes = 0;
+		for (int l = 0; l < weights.length; l++) {
+			bytes += 8L * weights[l].length + 4L * columnStarts[l].length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the output vector for given input vector.
+	 */
+	public float[] output(float[] input) {
+		float[] out = new float[layers[layers.length - 1]];
+		return output(newInferenceContext(), input, out);
+	}
+
+	/**
+	 * Writes the output vector for given input vector into given output buffer,
+	 * keeping all activations in given context. Does not allocate.
+	 */
+	public float[] output(InferenceContext context, float[] input, float[] out) {
+		float[] act = context.activations;
+		if (act.length != neuronCount) {
+			throw new IllegalArgumentException("Inference context was not created for this net");
+		}
+		System.arraycopy(input, 0, act, 0, layers[0]);
+
+		int last = layers.length - 1;
+		for (int l = 1; l <= last; l++) {
+			int[] starts = columnStarts[l - 1];
+			int[] rowIndex = rowIndices[l - 1];
+			float[] w = weights[l - 1];
+			int prevOffset = layerOffsets[l - 1];
+			int offset = layerOffsets[l];
+			for (int j = 0; j < layers[l]; j++) {
+				float sum = 0;
+				for (int k = starts[j]; k < starts[j + 1]; k++) {
+					sum += act[prevOffset + rowIndex[k]] * w[k];
+				}
+				act[offset + j] = sum;
+			}
+			if (l < last) {
+				activationFunction.apply(act, offset, offset + layers[l]);
+			}
+		}
+
+		System.arraycopy(act, layerOffsets[last], out, 0, layers[last]);
+		return out;
+	}
+
+	public InferenceContext newInferenceContext() {
+		return new InferenceContext(neuronCount);
+	}
+
+	private final int[] layers;
+	private final int[] layerOffsets;
+	private final int[][] columnStarts;
+	private final int[][] rowIndices;
+	private final float[][] weights;
+	private final ActivationFunction activationFunction;
+	private final int neuronCount;
+}
@@ -0,0 +1,149 @@
+package nnet;
+
+import java.util.Arrays;
+
+/**
+ * Removes the least important connections between adjacent layers of a
+ * trained {@link LayeredNet}, layer by layer, so that the result can be
+ * re-packed into a {@link PrunedNet} whose inference cost is proportional to
+ * the connections left.
+ *
+ * Nets with MATRIX storage get their connections disconnected. Nets with
+ * DENSE or OFF_HEAP storage, which cannot disconnect neurons, get the weights
+ * set to 0. Either way, connections already removed count towards the target
+ * sparsity.
+ */
+public final class Pruning {
+
+	private Pruning() {
+	}
+
+	/**
+	 * Removes given fraction of the connections between each pair of adjacent
+	 * layers, those with the smallest absolute weight first. Returns the number
+	 * of connections removed by this call.
+	 */
+	public static int pruneByMagnitude(LayeredNet net, float sparsity) {
+		float[][] importance = new float[net.layerCount()][];
+		for (int l = 0; l < importance.length; l++) {
+			importance[l] = new float[net.layerSize(l)];
+			Arrays.fill(importance[l], 1);
+		}
+		return prune(net, importance, sparsity);
+	}
+
+	/**
+	 * Removes given fraction of the connections between each pair of adjacent
+	 * layers, those contributing least to the weighted sums on given inputs
+	 * first. The contribution of a connection is its absolute weight times the
+	 * mean absolute activation of the neuron it comes from. Returns the number
+	 * of connections removed by this call.
+	 */
+	public static int pruneBySensitivity(LayeredNet net, float[][] calibrationInputs, float sparsity) {
+		float[][] importance = new float[net.layerCount()][];
+		for (int l = 0; l < importance.length; l++) {
+			importance[l] = new float[net.layerSize(l)];
+		}
+		InferenceContext context = net.newInferenceContext();
+		float[] out = new float[net.layerSize(net.layerCount() - 1)];
+		for (int s = 0; s < calibrationInputs.length; s++) {
+			net.output(context, calibrationInputs[s], out);
+			for (int l = 0; l < importance.length; l++) {
+				int offset = net.layerOffset(l);
+				for (int i = 0; i < importance[l].length; i++) {
+					importance[l][i] += Math.abs(context.activations[offset + i]) / calibrationInputs.length;
+				}
+			}
+		}
+		return prune(net, importance, sparsity);
+	}
+
+	/**
+	 * Returns the fraction of possible connections between adjacent layers of
+	 * given net that are missing or have weight 0.
+	 */
+	public static float sparsity(LayeredNet net) {
+		long total = 0;
+		long removed = 0;
+		for (int l = 0; l < net.layerCount() - 1; l++) {
+			int rows = net.layerSize(l);
+			int cols = net.layerSize(l + 1);
+			total += (long) rows * cols;
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					if (weight(net, l, i, j) == 0) {
+						removed++;
+					}
+				}
+			}
+		}
+		return total == 0 ? 0 : removed / (float) total;
+	}
+
+	/**
+	 * Removes the connections with the smallest absolute weight times
+	 * importance of their source neuron, layer by layer.
+	 */
+	private static int prune(LayeredNet net, float[][] importance, float sparsity) {
+		if (sparsity < 0 || sparsity > 1) {
+			throw new IllegalArgumentException("Sparsity must be between 0 and 1: " + sparsity);
+		}
+		int removed = 0;
+		for (int l = 0; l < net.layerCount() - 1; l++) {
+			int rows = net.layerSize(l);
+			int cols = net.layerSize(l + 1);
+			float[] scores = new float[rows * cols];
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					float w = weight(net, l, i, j);
+					scores[i * cols + j] = w == 0 ? -1 : Math.abs(w) * importance[l][i];
+				}
+			}
+			int count = Math.round(sparsity * scores.length);
+			if (count == 0) {
+				continue;
+			}
+			float[] sorted = scores.clone();
+			Arrays.sort(sorted);
+			float threshold = sorted[count - 1];
+
+			// remove everything below the threshold, then ties up to count
+			int ties = count;
+			for (int k = 0; k < scores.length; k++) {
+				if (scores[k] < threshold) {
+					ties--;
+				}
+			}
+			for (int k = 0; k < scores.length; k++) {
+				if (scores[k] < threshold || (scores[k] == threshold && ties-- > 0)) {
+					if (scores[k] >= 0) {
+						remove(net, l, k / cols, k % cols);
+						removed++;
+					}
+				}
+			}
+		}
+		return removed;
+	}
+
+	private static float weight(LayeredNet net, int layer, int i, int j) {
+		if (net.isDense()) {
+			return net.getLayerWeights(layer)[i * net.layerSize(layer + 1) + j];
+		}
+		int n1 = net.layerOffset(layer) + i;
+		int n2 = net.layerOffset(layer + 1) + j;
+		return net.connected(n1, n2) ? net.getWeight(n1, n2) : 0;
+	}
+
+	private static void remove(LayeredNet net, int layer, int i, int j) {
+		int n1 = net.layerOffset(layer) + i;
+		int n2 = net.layerOffset(layer + 1) + j;
+		if (net.isDense()) {
+			net.getLayerWeights(layer)[i * net.layerSize(layer + 1) + j] = 0;
+		} else if (net.getStorage() == LayeredNet.MATRIX) {
+			net.disconnect(n1, n2);
+		} else {
+			net.setWeight(n1, n2, 0);
+		}
+	}
+}
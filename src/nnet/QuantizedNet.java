@@ -0,0 +1,255 @@
+package nnet;
+
+/**
+ * A layered net for inference with weights quantized to 8 bit integers, a
+ * quarter of the memory of float weights.
+ * 
+ * The weights of each layer are mapped linearly onto -128 to 127: w is about
+ * scale * (q - zeroPoint), with scale and zero point chosen per layer from its
+ * smallest and largest weight. On evaluation, the activations of each layer
+ * are quantized the same way to 0 to 255, with a scale and zero point taken
+ * from the activations at hand, and the weighted sums are computed with
+ * integer multiplications and additions only. Each sum is then turned back
+ * into a float, correcting for both zero points, and passed through the
+ * activation function.
+ * 
+ * Results are close to, but not the same as, those of the float net; see
+ * {@link #maxError(LayeredNet, float[][])}. Like {@link FrozenNet}, a
+ * quantized net is immutable and may be evaluated by any number of threads
+ * at once, each with a context of its own.
+ */
+public class QuantizedNet {
+
+	private QuantizedNet(int[] layers, byte[][] weights, float[] scales, int[] zeroPoints,
+			ActivationFunction activationFunction) {
+		this.layers = layers;
+		this.weights = weights;
+		this.scales = scales;
+		this.zeroPoints = zeroPoints;
+		this.activationFunction = activationFunction;
+		this.layerOffsets = new int[layers.length];
+		this.columnSums = new int[layers.length - 1][];
+		int counter = 0;
+		int max = 0;
+		for (int l = 0; l < layers.length; l++) {
+			layerOffsets[l] = counter;
+			counter += layers[l];
+			max = Math.max(max, layers[l]);
+		}
+		this.neuronCount = counter;
+		this.maxLayerSize = max;
+		for (int l = 0; l < weights.length; l++) {
+			int cols = layers[l + 1];
+			columnSums[l] = new int[cols];
+			for (int i = 0; i < layers[l]; i++) {
+				for (int j = 0; j < cols; j++) {
+					columnSums[l][j] += weights[l][i * cols + j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a quantized copy of the current weights of given net. Nets with
+	 * MATRIX storage must not have connections other than between adjacent
+	 * layers.
+	 */
+	public static QuantizedNet of(LayeredNet net) {
+		FrozenNet frozen = FrozenNet.of(net);
+		int[] layers = new int[frozen.layerCount()];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = frozen.layerSize(l);
+			if (layers[l] > MAX_LAYER_SIZE) {
+				throw new IllegalArgumentException("Layer " + l + " exceeds " + MAX_LAYER_SIZE
+						+ " neurons, integer sums could overflow");
+			}
+		}
+
+		byte[][] weights = new byte[layers.length - 1][];
+		float[] scales = new float[layers.length - 1];
+		int[] zeroPoints = new int[layers.length - 1];
+		for (int l = 0; l < weights.length; l++) {
+			int rows = layers[l];
+			int cols = layers[l + 1];
+			float min = 0;
+			float max = 0;
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					float w = frozen.getWeight(l, i, j);
+					min = Math.min(min, w);
+					max = Math.max(max, w);
+				}
+			}
+			float scale = max > min ? (max - min) / 255 : 1;
+			int zeroPoint = clamp(Math.round(-128 - min / scale), -128, 127);
+			weights[l] = new byte[rows * cols];
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					weights[l][i * cols + j] = (byte) clamp(Math.round(frozen.getWeight(l, i, j) / scale) + zeroPoint, -128,
+							127);
+				}
+			}
+			scales[l] = scale;
+			zeroPoints[l] = zeroPoint;
+		}
+		return new QuantizedNet(layers, weights, scales, zeroPoints, frozen.getActivationFunction());
+	}
+
+	public int neuronCount() {
+		return neuronCount;
+	}
+
+	public int layerCount() {
+		return layers.length;
+	}
+
+	public int layerSize(int layer) {
+		return layers[layer];
+	}
+
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Returns the dequantized weight from neuron i of given layer to neuron j
+	 * of the next layer.
+	 */
+	public float getWeight(int layer, int i, int j) {
+		return scales[layer] * (weights[layer][i * layers[layer + 1] + j] - zeroPoints[layer]);
+	}
+
+	/**
+	 * Returns the number of bytes taken by the weights and the per-layer
+	 * quantization parameters.
+	 */
+	public long weightBytes() {
+		long bytes = 0;
+		for (int l = 0; l < weights.length; l++) {
+			bytes += weights[l].length + 4L * columnSums[l].length + 8;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the output vector for given input vector.
+	 */
+	public float[] output(float[] input) {
+		float[] out = new float[layers[layers.length - 1]];
+		return output(newInferenceContext(), input, out);
+	}
+
+	/**
+	 * Writes the output vector for given input vector into given output buffer,
+	 * keeping all intermediate values in given context. Does not allocate.
+	 */
+	public float[] output(InferenceContext context, float[] input, float[] out) {
+		float[] act = context.activations;
+		if (act.length != neuronCount || context.accumulators == null || context.accumulators.length < maxLayerSize) {
+			throw new IllegalArgumentException("Inference context was not created for this net");
+		}
+		System.arraycopy(input, 0, act, 0, layers[0]);
+		byte[] q = context.quantized;
+		int[] acc = context.accumulators;
+
+		int last = layers.length - 1;
+		for (int l = 1; l <= last; l++) {
+			int rows = layers[l - 1];
+			int cols = layers[l];
+			int prevOffset = layerOffsets[l - 1];
+			int offset = layerOffsets[l];
+
+			// quantize the activations of the previous layer to 0..255, keeping 0 exact
+			float min = 0;
+			float max = 0;
+			for (int i = 0; i < rows; i++) {
+				min = Math.min(min, act[prevOffset + i]);
+				max = Math.max(max, act[prevOffset + i]);
+			}
+			float inputScale = max > min ? (max - min) / 255 : 1;
+			float inverse = 1 / inputScale;
+			int inputZero = Math.round(-min * inverse);
+			int inputSum = 0;
+			for (int i = 0; i < rows; i++) {
+				int v = clamp(Math.round(act[prevOffset + i] * inverse) + inputZero, 0, 255);
+				q[i] = (byte) v;
+				inputSum += v;
+			}
+
+			// integer matrix-vector product, row by row like the dense float kernel
+			byte[] w = weights[l - 1];
+			for (int j = 0; j < cols; j++) {
+				acc[j] = 0;
+			}
+			for (int i = 0; i < rows; i++) {
+				int a = q[i] & 0xff;
+				if (a == 0) {
+					continue;
+				}
+				int base = i * cols;
+				for (int j = 0; j < cols; j++) {
+					acc[j] += a * w[base + j];
+				}
+			}
+
+			float scale = inputScale * scales[l - 1];
+			int weightZero = zeroPoints[l - 1];
+			int[] sums = columnSums[l - 1];
+			int constant = rows * inputZero * weightZero - weightZero * inputSum;
+			for (int j = 0; j < cols; j++) {
+				act[offset + j] = scale * (acc[j] - inputZero * sums[j] + constant);
+			}
+			if (l < last) {
+				activationFunction.apply(act, offset, offset + cols);
+			}
+		}
+
+		System.arraycopy(act, layerOffsets[last], out, 0, layers[last]);
+		return out;
+	}
+
+	public InferenceContext newInferenceContext() {
+		return new InferenceContext(neuronCount, maxLayerSize);
+	}
+
+	/**
+	 * Returns the largest absolute difference between the outputs of this net
+	 * and of {@link LayeredNet#feedForward(float[])} of given net, over given
+	 * inputs.
+	 */
+	public float maxError(LayeredNet net, float[][] inputs) {
+		InferenceContext context = newInferenceContext();
+		float[] out = new float[layers[layers.length - 1]];
+		float maxError = 0;
+		for (int s = 0; s < inputs.length; s++) {
+			float[] expected = net.feedForward(inputs[s]);
+			output(context, inputs[s], out);
+			for (int j = 0; j < out.length; j++) {
+				maxError = Math.max(maxError, Math.abs(out[j] - expected[j]));
+			}
+		}
+		return maxError;
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return value < min ? min : value > max ? max : value;
+	}
+
+	/**
+	 * Largest layer size for which the integer sums of a layer cannot
+	 * overflow. The zero-point corrected sum adds up size products of
+	 * (a - inputZero) and (w - weightZero), each factor up to 255 in magnitude,
+	 * so 255 * 255 * size must stay below 2^31.
+	 */
+	private static final int MAX_LAYER_SIZE = Integer.MAX_VALUE / (255 * 255);
+
+	private final int[] layers;
+	private final int[] layerOffsets;
+	private final byte[][] weights;
+	private final float[] scales;
+	private final int[] zeroPoints;
+	private final int[][] columnSums;
+	private final ActivationFunction activationFunction;
+	private final int neuronCount;
+	private final int maxLayerSize;
+}
@@ -0,0 +1,54 @@
+package nnet;
+
+import nnet.metrics.MetricsRecorder;
+
+/**
+ * Trains a {@link LayeredNet} of any storage one sample at a time with
+ * {@link MyBackpropagation}, in the order given. Samples are evaluated with
+ * {@link LayeredNet#output(float[])}, which leaves the activations the
+ * learning rule was developed with.
+ */
+public class SampleTrainer implements Trainer {
+
+	public SampleTrainer(LayeredNet net) {
+		this.net = net;
+		this.metrics = new MetricsRecorder(net.layerCount() - 1);
+	}
+
+	@Override
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	/**
+	 * Returns the recorder collecting the metrics of this trainer, to add
+	 * listeners to. Each sample counts as a batch, and the weight update is
+	 * part of the backward time.
+	 */
+	public MetricsRecorder getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public float trainEpoch(float[][] inputs, float[][] targets, float learnRate) {
+		metrics.startEpoch();
+		float totalError = 0;
+		for (int s = 0; s < inputs.length; s++) {
+			long start = System.nanoTime();
+			float[] out = net.output(inputs[s]);
+			long forwardEnd = System.nanoTime();
+			float[] errout = MyBackpropagation.backpropagate(net, targets[s], out, learnRate);
+			float sampleError = 0;
+			for (int i = 0; i < errout.length; i++) {
+				sampleError += errout[i] / errout.length;
+			}
+			totalError += sampleError;
+			metrics.recordBatch(1, sampleError, forwardEnd - start, System.nanoTime() - forwardEnd, 0);
+		}
+		metrics.finishEpoch();
+		return totalError;
+	}
+
+	private final LayeredNet net;
+	private final MetricsRecorder metrics;
+}
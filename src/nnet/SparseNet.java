@@ -0,0 +1,466 @@
+package nnet;
+
+import java.util.Arrays;
+
+/**
+ *
+ * A neural network for arbitrary, sparse topologies.
+ *
+ * Connections are kept in compressed-row (outgoing) and compressed-column
+ * (incoming) form, so looking up the input or output neurons of a neuron, or
+ * computing its input activation, costs O(degree) instead of O(neuronCount).
+ * Space is linear in the number of neurons and connections.
+ *
+ * Structural edits via connect/disconnect are collected in a pending-edits
+ * buffer and merged into the compressed arrays lazily, i.e. on the next query
+ * that needs the full neighbourhood of a neuron or once the buffer gets too
+ * large. Point queries (connected, getWeight, setWeight) look at pending edits
+ * first and never force a merge.
+ */
+public class SparseNet implements NN {
+
+	public SparseNet(int neuronCount) {
+		this.neuronCount = neuronCount;
+		this.activations = new float[neuronCount];
+
+		this.rowStart = new int[neuronCount + 1];
+		this.rowNeurons = new int[0];
+		this.rowWeights = new float[0];
+		this.colStart = new int[neuronCount + 1];
+		this.colNeurons = new int[0];
+		this.colEdges = new int[0];
+
+		this.pendingFrom = new int[MIN_PENDING];
+		this.pendingTo = new int[MIN_PENDING];
+		this.pendingWeight = new float[MIN_PENDING];
+		this.pendingConnect = new boolean[MIN_PENDING];
+		this.pendingKeys = new long[2 * MIN_PENDING];
+		this.pendingSlots = new int[2 * MIN_PENDING];
+		Arrays.fill(pendingKeys, NO_KEY);
+	}
+
+	@Override
+	public int neuronCount() {
+		return neuronCount;
+	}
+
+	/**
+	 * Returns the number of connections in this net.
+	 */
+	public int connectionCount() {
+		compact();
+		return rowNeurons.length;
+	}
+
+	@Override
+	public void connect(int neuron1, int neuron2, float weight) {
+		addPending(neuron1, neuron2, weight, true);
+	}
+
+	@Override
+	public void disconnect(int neuron1, int neuron2) {
+		addPending(neuron1, neuron2, 0, false);
+	}
+
+	@Override
+	public boolean connected(int n1, int n2) {
+		int p = findPending(n1, n2);
+		if (p >= 0) {
+			return pendingConnect[p];
+		}
+		return findEdge(n1, n2) >= 0;
+	}
+
+	@Override
+	public float getWeight(int n1, int n2) {
+		int p = findPending(n1, n2);
+		if (p >= 0) {
+			return pendingConnect[p] ? pendingWeight[p] : 0;
+		}
+		int e = findEdge(n1, n2);
+		return e >= 0 ? rowWeights[e] : 0;
+	}
+
+	@Override
+	public void setWeight(int n1, int n2, float w) {
+		int p = findPending(n1, n2);
+		if (p >= 0) {
+			if (pendingConnect[p]) {
+				pendingWeight[p] = w;
+			}
+			return;
+		}
+		int e = findEdge(n1, n2);
+		if (e >= 0) {
+			rowWeights[e] = w;
+		}
+	}
+
+	@Override
+	public void randomlyInitWeights(float min, float max) {
+		compact();
+		float interval = max - min;
+		for (int i = 0; i < rowWeights.length; i++) {
+			rowWeights[i] = min + (float) Math.random() * interval;
+		}
+	}
+
+	@Override
+	public void randomlyInitActivations(float min, float max) {
+		float interval = max - min;
+		for (int i = 0; i < neuronCount; i++) {
+			activate(i, min + (float) Math.random() * interval);
+		}
+	}
+
+	@Override
+	public int[] inputNeurons() {
+		compact();
+		int count = 0;
+		for (int i = 0; i < neuronCount; i++) {
+			if (colStart[i] == colStart[i + 1]) {
+				count++;
+			}
+		}
+		int[] ret = new int[count];
+		count = 0;
+		for (int i = 0; i < neuronCount; i++) {
+			if (colStart[i] == colStart[i + 1]) {
+				ret[count++] = i;
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public boolean isInputNeuron(int n) {
+		compact();
+		return colStart[n] == colStart[n + 1];
+	}
+
+	@Override
+	public int[] getInputNeuronsFor(int neuron) {
+		compact();
+		return Arrays.copyOfRange(colNeurons, colStart[neuron], colStart[neuron + 1]);
+	}
+
+	@Override
+	public int[] getOutputNeuronsFor(int neuron) {
+		compact();
+		return Arrays.copyOfRange(rowNeurons, rowStart[neuron], rowStart[neuron + 1]);
+	}
+
+	@Override
+	public void clearActivations() {
+		for (int i = 0; i < neuronCount; i++) {
+			activations[i] = 0;
+		}
+	}
+
+	@Override
+	public void activateInputNeurons(float[] inputValues) {
+		int[] inputNeurons = inputNeurons();
+		for (int i = 0; i < inputNeurons.length; i++) {
+			activate(inputNeurons[i], inputValues[i]);
+		}
+	}
+
+	@Override
+	public void activateAll(float[] inputValues) {
+		for (int i = 0; i < neuronCount; i++) {
+			activate(i, inputValues[i]);
+		}
+	}
+
+	@Override
+	public void activate(int neuron, float activation) {
+		activations[neuron] = activation;
+	}
+
+	@Override
+	public float getActivation(int neuron) {
+		return activations[neuron];
+	}
+
+	@Override
+	public float[] getActivations() {
+		return activations.clone();
+	}
+
+	@Override
+	public float getInputActivation(int neuron) {
+		compact();
+		float sum = 0;
+		for (int k = colStart[neuron]; k < colStart[neuron + 1]; k++) {
+			sum += rowWeights[colEdges[k]] * activations[colNeurons[k]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the weighted sums of activations going into each neuron.
+	 *
+	 * This array represents the neural net's next state.
+	 */
+	@Override
+	public float[] getInputActivations() {
+		compact();
+		float[] as = new float[neuronCount];
+		for (int i = 0; i < neuronCount; i++) {
+			if (colStart[i] == colStart[i + 1]) {
+				as[i] = activations[i];
+			} else {
+				float sum = 0;
+				for (int k = colStart[i]; k < colStart[i + 1]; k++) {
+					sum += rowWeights[colEdges[k]] * activations[colNeurons[k]];
+				}
+				as[i] = sum;
+			}
+		}
+		return as;
+	}
+
+	public void sigmoidShift() {
+		float[] a = getInputActivations();
+		for (int i = 0; i < neuronCount; i++) {
+			activate(i, NNet.sigmoid(a[i]));
+		}
+	}
+
+	public void tanhShift() {
+		float[] a = getInputActivations();
+		for (int i = 0; i < neuronCount; i++) {
+			activate(i, NNet.tanh(a[i]));
+		}
+	}
+
+	public void shift() {
+		float[] a = getInputActivations();
+		for (int i = 0; i < neuronCount; i++) {
+			activate(i, a[i]);
+		}
+	}
+
+	public NN copy() {
+		compact();
+		SparseNet copy = new SparseNet(neuronCount);
+		copy.rowStart = rowStart.clone();
+		copy.rowNeurons = rowNeurons.clone();
+		copy.rowWeights = rowWeights.clone();
+		copy.colStart = colStart.clone();
+		copy.colNeurons = colNeurons.clone();
+		copy.colEdges = colEdges.clone();
+		return copy;
+	}
+
+	/**
+	 * Merges all pending edits into the compressed row and column arrays.
+	 *
+	 * Runs in O(neuronCount + connections + pending edits).
+	 */
+	public void compact() {
+		if (pendingCount == 0) {
+			return;
+		}
+
+		// order pending edits by (from, to) using two stable counting sorts
+		int[] byTo = countingSort(identity(pendingCount), pendingTo);
+		int[] order = countingSort(byTo, pendingFrom);
+
+		int[] newRowStart = new int[neuronCount + 1];
+		int[] newRowNeurons = new int[rowNeurons.length + pendingCount];
+		float[] newRowWeights = new float[rowNeurons.length + pendingCount];
+
+		int nnz = 0;
+		int p = 0;
+		for (int row = 0; row < neuronCount; row++) {
+			newRowStart[row] = nnz;
+			int e = rowStart[row];
+			int end = rowStart[row + 1];
+			while (e < end || (p < order.length && pendingFrom[order[p]] == row)) {
+				int pending = (p < order.length && pendingFrom[order[p]] == row) ? order[p] : -1;
+				int col = e < end ? rowNeurons[e] : Integer.MAX_VALUE;
+				if (pending < 0 || col < pendingTo[pending]) {
+					newRowNeurons[nnz] = col;
+					newRowWeights[nnz++] = rowWeights[e++];
+				} else {
+					if (col == pendingTo[pending]) {
+						e++;
+					}
+					if (pendingConnect[pending]) {
+						newRowNeurons[nnz] = pendingTo[pending];
+						newRowWeights[nnz++] = pendingWeight[pending];
+					}
+					p++;
+				}
+			}
+		}
+		newRowStart[neuronCount] = nnz;
+
+		rowStart = newRowStart;
+		rowNeurons = Arrays.copyOf(newRowNeurons, nnz);
+		rowWeights = Arrays.copyOf(newRowWeights, nnz);
+		buildColumns();
+
+		pendingCount = 0;
+		Arrays.fill(pendingKeys, NO_KEY);
+	}
+
+	private void buildColumns() {
+		int nnz = rowNeurons.length;
+		int[] newColStart = new int[neuronCount + 1];
+		for (int k = 0; k < nnz; k++) {
+			newColStart[rowNeurons[k] + 1]++;
+		}
+		for (int i = 0; i < neuronCount; i++) {
+			newColStart[i + 1] += newColStart[i];
+		}
+		int[] fill = Arrays.copyOf(newColStart, neuronCount);
+		int[] newColNeurons = new int[nnz];
+		int[] newColEdges = new int[nnz];
+		for (int row = 0; row < neuronCount; row++) {
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+				int pos = fill[rowNeurons[k]]++;
+				newColNeurons[pos] = row;
+				newColEdges[pos] = k;
+			}
+		}
+		colStart = newColStart;
+		colNeurons = newColNeurons;
+		colEdges = newColEdges;
+	}
+
+	/**
+	 * Returns given permutation stably re-ordered by the given neuron keys.
+	 */
+	private int[] countingSort(int[] perm, int[] keys) {
+		int[] count = new int[neuronCount + 1];
+		for (int i = 0; i < perm.length; i++) {
+			count[keys[perm[i]] + 1]++;
+		}
+		for (int i = 0; i < neuronCount; i++) {
+			count[i + 1] += count[i];
+		}
+		int[] sorted = new int[perm.length];
+		for (int i = 0; i < perm.length; i++) {
+			sorted[count[keys[perm[i]]]++] = perm[i];
+		}
+		return sorted;
+	}
+
+	private static int[] identity(int length) {
+		int[] r = new int[length];
+		for (int i = 0; i < length; i++) {
+			r[i] = i;
+		}
+		return r;
+	}
+
+	/**
+	 * Returns the index of the edge n1 -> n2 in the compressed row arrays, or
+	 * -1 if there is no such edge.
+	 */
+	private int findEdge(int n1, int n2) {
+		int e = Arrays.binarySearch(rowNeurons, rowStart[n1], rowStart[n1 + 1], n2);
+		return e >= 0 ? e : -1;
+	}
+
+	/**
+	 * Records an edit, overwriting any earlier pending edit of the same
+	 * connection so that each connection is pending at most once.
+	 */
+	private void addPending(int n1, int n2, float weight, boolean connect) {
+		if (n1 < 0 || n1 >= neuronCount || n2 < 0 || n2 >= neuronCount) {
+			throw new IndexOutOfBoundsException("No such connection: " + n1 + " -> " + n2);
+		}
+		int p = findPending(n1, n2);
+		if (p < 0) {
+			if (pendingCount >= Math.max(MIN_PENDING, rowNeurons.length / 2)) {
+				compact();
+			}
+			if (pendingCount == pendingFrom.length) {
+				growPending();
+			}
+			p = pendingCount++;
+			pendingFrom[p] = n1;
+			pendingTo[p] = n2;
+			putPendingSlot(key(n1, n2), p);
+		}
+		pendingWeight[p] = weight;
+		pendingConnect[p] = connect;
+	}
+
+	private int findPending(int n1, int n2) {
+		if (pendingCount == 0) {
+			return -1;
+		}
+		long key = key(n1, n2);
+		int mask = pendingKeys.length - 1;
+		for (int slot = hash(key) & mask; pendingKeys[slot] != NO_KEY; slot = (slot + 1) & mask) {
+			if (pendingKeys[slot] == key) {
+				return pendingSlots[slot];
+			}
+		}
+		return -1;
+	}
+
+	private void putPendingSlot(long key, int p) {
+		int mask = pendingKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (pendingKeys[slot] != NO_KEY) {
+			slot = (slot + 1) & mask;
+		}
+		pendingKeys[slot] = key;
+		pendingSlots[slot] = p;
+	}
+
+	private void growPending() {
+		int capacity = pendingFrom.length * 2;
+		pendingFrom = Arrays.copyOf(pendingFrom, capacity);
+		pendingTo = Arrays.copyOf(pendingTo, capacity);
+		pendingWeight = Arrays.copyOf(pendingWeight, capacity);
+		pendingConnect = Arrays.copyOf(pendingConnect, capacity);
+
+		// keep the hash table at most half full
+		pendingKeys = new long[2 * capacity];
+		pendingSlots = new int[2 * capacity];
+		Arrays.fill(pendingKeys, NO_KEY);
+		for (int p = 0; p < pendingCount; p++) {
+			putPendingSlot(key(pendingFrom[p], pendingTo[p]), p);
+		}
+	}
+
+	private long key(int n1, int n2) {
+		return (long) n1 * neuronCount + n2;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static final int MIN_PENDING = 1024;
+	private static final long NO_KEY = -1L;
+
+	// compressed rows: outgoing connections of neuron i are rowNeurons[rowStart[i]..rowStart[i+1]), sorted
+	private int[] rowStart;
+	private int[] rowNeurons;
+	private float[] rowWeights;
+
+	// compressed columns: incoming connections of neuron i, pointing back into the row arrays
+	private int[] colStart;
+	private int[] colNeurons;
+	private int[] colEdges;
+
+	// pending edits, not yet merged into the compressed arrays
+	private int[] pendingFrom;
+	private int[] pendingTo;
+	private float[] pendingWeight;
+	private boolean[] pendingConnect;
+	private int pendingCount;
+	private long[] pendingKeys;
+	private int[] pendingSlots;
+
+	private float[] activations;
+	private int neuronCount;
+}
@@ -0,0 +1,15 @@
+package nnet;
+
+/**
+ * Trains a {@link LayeredNet} epoch by epoch on in-memory samples.
+ */
+public interface Trainer {
+
+	LayeredNet getNet();
+
+	/**
+	 * Trains on all given samples once and returns the total error, i.e. the
+	 * sum over all samples of the mean squared output error.
+	 */
+	float trainEpoch(float[][] inputs, float[][] targets, float learnRate);
+}
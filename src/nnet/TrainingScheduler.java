@@ -0,0 +1,355 @@
+package nnet;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a {@link Trainer} epoch after epoch until a stopping criterion is met:
+ * the training error drops to a target, the validation accuracy reaches a
+ * target, the validation error has not improved for a number of epochs
+ * (early stopping), or the epoch or time budget is used up. The learning rate
+ * of each epoch is taken from a {@link LearningRateSchedule}.
+ * 
+ * If a validation set is given, the net is evaluated on it after every epoch,
+ * on a background thread and against a {@link FrozenNet} snapshot of the
+ * weights, while training goes on with the next epoch. Decisions based on the
+ * validation set therefore lag one epoch behind. At the end, the net gets the
+ * weights of the epoch with the lowest validation error back, unless
+ * disabled or training converged.
+ */
+public class TrainingScheduler {
+
+	/**
+	 * Stop reasons: training error reached the target error.
+	 */
+	public static final int CONVERGED = 0;
+	/**
+	 * Stop reasons: validation accuracy reached the target accuracy.
+	 */
+	public static final int TARGET_ACCURACY = 1;
+	/**
+	 * Stop reasons: validation error did not improve within the patience.
+	 */
+	public static final int EARLY_STOPPED = 2;
+	public static final int MAX_EPOCHS = 3;
+	public static final int TIME_BUDGET = 4;
+
+	public TrainingScheduler(Trainer trainer, LearningRateSchedule schedule) {
+		this.trainer = trainer;
+		this.schedule = schedule;
+	}
+
+	/**
+	 * Sets the held-out samples to evaluate after each epoch.
+	 */
+	public void setValidationSet(float[][] inputs, float[][] targets) {
+		if (inputs.length != targets.length || inputs.length == 0) {
+			throw new IllegalArgumentException("Validation set needs as many targets as inputs, and at least one");
+		}
+		this.validationInputs = inputs;
+		this.validationTargets = targets;
+	}
+
+	/**
+	 * Sets the maximum number of epochs to train. Defaults to 1000.
+	 */
+	public void setMaxEpochs(int maxEpochs) {
+		this.maxEpochs = maxEpochs;
+	}
+
+	/**
+	 * Sets the wall clock time after which no further epoch is started, or 0
+	 * for no limit, which is the default.
+	 */
+	public void setTimeBudget(long millis) {
+		this.timeBudgetNanos = millis * 1000000L;
+	}
+
+	/**
+	 * Stops as soon as the total training error of an epoch is at most given
+	 * value.
+	 */
+	public void setTargetError(float targetError) {
+		this.targetError = targetError;
+	}
+
+	/**
+	 * Stops as soon as the fraction of correctly classified validation samples
+	 * is at least given value. A sample counts as correct if the largest output
+	 * is the one of the largest target, or, for nets with a single output, if
+	 * output and target differ by less than 0.5.
+	 */
+	public void setTargetAccuracy(float targetAccuracy) {
+		this.targetAccuracy = targetAccuracy;
+	}
+
+	/**
+	 * Stops once the validation error has not improved by more than
+	 * minImprovement for given number of epochs. A patience of 0, the default,
+	 * disables early stopping.
+	 */
+	public void setPatience(int epochs, float minImprovement) {
+		this.patience = epochs;
+		this.minImprovement = minImprovement;
+	}
+
+	/**
+	 * Sets whether to restore the weights of the epoch with the lowest
+	 * validation error at the end. Defaults to true. Runs stopping with
+	 * {@link #CONVERGED} keep the weights that reached the target error.
+	 */
+	public void setRestoreBest(boolean restoreBest) {
+		this.restoreBest = restoreBest;
+	}
+
+	/**
+	 * Trains on given samples until a stopping criterion is met.
+	 */
+	public Result run(float[][] inputs, float[][] targets) {
+		LayeredNet net = trainer.getNet();
+		Result result = new Result();
+		long start = System.nanoTime();
+		ExecutorService validator = validationInputs == null ? null
+				: Executors.newSingleThreadExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "nnet-validation");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			Future<Validation> pending = null;
+			int stopReason = -1;
+			int stopEpoch = 0;
+			int epoch = 0;
+			while (stopReason < 0) {
+				result.trainingError = trainer.trainEpoch(inputs, targets, schedule.learnRate(epoch));
+				epoch++;
+
+				if (validator != null) {
+					FrozenNet snapshot = FrozenNet.of(net);
+					if (pending != null) {
+						Validation validation = await(pending);
+						stopReason = evaluate(result, validation);
+						stopEpoch = validation.epoch;
+					}
+					pending = validator.submit(new Validation(snapshot, epoch));
+				}
+				if (stopReason < 0) {
+					stopEpoch = epoch;
+					if (result.trainingError <= targetError) {
+						stopReason = CONVERGED;
+					} else if (epoch >= maxEpochs) {
+						stopReason = MAX_EPOCHS;
+					} else if (timeBudgetNanos > 0 && System.nanoTime() - start >= timeBudgetNanos) {
+						stopReason = TIME_BUDGET;
+					}
+				}
+			}
+			if (pending != null) {
+				// the last epoch may still be the best one
+				evaluate(result, await(pending));
+			}
+			result.epochs = epoch;
+			result.stopEpoch = stopEpoch;
+			result.stopReason = stopReason;
+			if (restoreBest && stopReason != CONVERGED && result.best != null && result.bestEpoch != epoch) {
+				result.best.copyWeightsTo(net);
+			}
+		} finally {
+			if (validator != null) {
+				validator.shutdownNow();
+			}
+		}
+		result.elapsedNanos = System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * Takes given validation result into account and returns the stop reason
+	 * it leads to, or -1.
+	 */
+	private int evaluate(Result result, Validation validation) {
+		result.lastValidationError = validation.error;
+		result.lastValidationAccuracy = validation.accuracy;
+		if (result.best == null || validation.error < result.bestValidationError - minImprovement) {
+			result.best = validation.snapshot;
+			result.bestEpoch = validation.epoch;
+			result.bestValidationError = validation.error;
+			result.bestValidationAccuracy = validation.accuracy;
+		}
+		if (validation.accuracy >= targetAccuracy) {
+			return TARGET_ACCURACY;
+		}
+		if (patience > 0 && validation.epoch - result.bestEpoch >= patience) {
+			return EARLY_STOPPED;
+		}
+		return -1;
+	}
+
+	private static Validation await(Future<Validation> pending) {
+		try {
+			return pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for validation", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Validation failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Evaluates a weight snapshot on the validation set.
+	 */
+	private class Validation implements Callable<Validation> {
+
+		Validation(FrozenNet snapshot, int epoch) {
+			this.snapshot = snapshot;
+			this.epoch = epoch;
+		}
+
+		@Override
+		public Validation call() {
+			InferenceContext context = snapshot.newInferenceContext();
+			float[] out = new float[snapshot.layerSize(snapshot.layerCount() - 1)];
+			int correct = 0;
+			for (int s = 0; s < validationInputs.length; s++) {
+				snapshot.output(context, validationInputs[s], out);
+				float[] target = validationTargets[s];
+				for (int j = 0; j < out.length; j++) {
+					float e = target[j] - out[j];
+					error += (e * e) / out.length;
+				}
+				if (out.length == 1 ? Math.abs(target[0] - out[0]) < 0.5f : argmax(out) == argmax(target)) {
+					correct++;
+				}
+			}
+			accuracy = (float) correct / validationInputs.length;
+			return this;
+		}
+
+		final FrozenNet snapshot;
+		final int epoch;
+		float error;
+		float accuracy;
+	}
+
+	private static int argmax(float[] v) {
+		int best = 0;
+		for (int i = 1; i < v.length; i++) {
+			if (v[i] > v[best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The outcome of {@link TrainingScheduler#run(float[][], float[][])}.
+	 */
+	public static class Result {
+
+		public int getEpochs() {
+			return epochs;
+		}
+
+		/**
+		 * Returns the epoch whose result the stop decision was based on. For
+		 * stops based on the validation set, this is the epoch before the last
+		 * one trained, since validation lags one epoch behind.
+		 */
+		public int getStopEpoch() {
+			return stopEpoch;
+		}
+
+		/**
+		 * Returns why training stopped, one of {@link TrainingScheduler#CONVERGED},
+		 * {@link TrainingScheduler#TARGET_ACCURACY},
+		 * {@link TrainingScheduler#EARLY_STOPPED},
+		 * {@link TrainingScheduler#MAX_EPOCHS} and
+		 * {@link TrainingScheduler#TIME_BUDGET}.
+		 */
+		public int getStopReason() {
+			return stopReason;
+		}
+
+		/**
+		 * Returns the total training error of the last epoch.
+		 */
+		public float getTrainingError() {
+			return trainingError;
+		}
+
+		/**
+		 * Returns the epoch with the lowest validation error, counting from 1,
+		 * or 0 without validation set.
+		 */
+		public int getBestEpoch() {
+			return bestEpoch;
+		}
+
+		public float getBestValidationError() {
+			return bestValidationError;
+		}
+
+		public float getBestValidationAccuracy() {
+			return bestValidationAccuracy;
+		}
+
+		public float getLastValidationError() {
+			return lastValidationError;
+		}
+
+		public float getLastValidationAccuracy() {
+			return lastValidationAccuracy;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedNanos / 1000000;
+		}
+
+		@Override
+		public String toString() {
+			String[] reasons = { "converged", "target accuracy reached", "early stopped", "max epochs reached",
+					"time budget used up" };
+			String s = reasons[stopReason] + " after " + epochs + " epochs";
+			if (stopEpoch != epochs) {
+				s += " (based on epoch " + stopEpoch + ")";
+			}
+			s += " in " + getElapsedMillis() + " ms, training error " + trainingError;
+			if (best != null) {
+				s += ", best validation error " + bestValidationError + " (accuracy " + bestValidationAccuracy
+						+ ") in epoch " + bestEpoch;
+			}
+			return s;
+		}
+
+		private int epochs;
+		private int stopEpoch;
+		private int stopReason;
+		private float trainingError;
+		private FrozenNet best;
+		private int bestEpoch;
+		private float bestValidationError = Float.NaN;
+		private float bestValidationAccuracy = Float.NaN;
+		private float lastValidationError = Float.NaN;
+		private float lastValidationAccuracy = Float.NaN;
+		private long elapsedNanos;
+	}
+
+	private final Trainer trainer;
+	private final LearningRateSchedule schedule;
+	private float[][] validationInputs;
+	private float[][] validationTargets;
+	private int maxEpochs = 1000;
+	private long timeBudgetNanos;
+	private float targetError = Float.NEGATIVE_INFINITY;
+	private float targetAccuracy = Float.POSITIVE_INFINITY;
+	private int patience;
+	private float minImprovement;
+	private boolean restoreBest = true;
+}
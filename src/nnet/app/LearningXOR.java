@@ -3,8 +3,12 @@ package nnet.app;
 import java.util.LinkedList;
 import java.util.List;
 
-import nnet.MyBackpropagation;
 import nnet.LayeredNet;
+import nnet.LearningRateSchedules;
+import nnet.SampleTrainer;
+import nnet.TrainingScheduler;
+import nnet.metrics.EpochMetrics;
+import nnet.metrics.TrainingListener;
 
 
 class Example {
@@ -33,19 +37,32 @@ public class LearningXOR {
 	
 		System.out.println("start training...");
 		long startTime = System.currentTimeMillis();
-		float totalError;
-		do {
-			totalError = 0;
-			for (Example e : examples) {				
-				float[] myOut = net.output(e.input);
-				float[] errout = MyBackpropagation.backpropagate(net, e.output, myOut, learnRate);
-				for (int i = 0; i < errout.length; i++) {
-					totalError += (errout[i] / errout.length);
+		SampleTrainer trainer = new SampleTrainer(net);
+		// printing every epoch would take longer than training the net
+		trainer.getMetrics().addListener(new TrainingListener() {
+			public void batchSampled(EpochMetrics current) {
+			}
+
+			public void epochCompleted(EpochMetrics epoch) {
+				if (epoch.getEpoch() % 1000 == 0) {
+					System.out.println("epoch = " + epoch.getEpoch() + ",  totalError = " + (float) epoch.getError());
 				}
 			}
-			System.out.println("learnRate = " + learnRate + ",  totalError = " + totalError);
-//			learnRate -= (learnRate/1000); // do simulated annealing by slowly decreasing learning step size
-		} while (Math.abs(totalError) > minError);		
+		});
+
+		float[][] inputs = new float[examples.size()][];
+		float[][] targets = new float[examples.size()][];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = examples.get(i).input;
+			targets[i] = examples.get(i).output;
+		}
+
+		// LearningRateSchedules.exponential(learnRate, 0.001f) does simulated annealing by slowly decreasing learning step size
+		TrainingScheduler scheduler = new TrainingScheduler(trainer, LearningRateSchedules.constant(learnRate));
+		scheduler.setTargetError(minError);
+		scheduler.setMaxEpochs(MAX_EPOCHS);
+		TrainingScheduler.Result result = scheduler.run(inputs, targets);
+		System.out.println(result);
 		System.out.println("done in "+(System.currentTimeMillis()-startTime)/1000f+" sec");
 			
 		
@@ -59,6 +76,8 @@ public class LearningXOR {
 		vis.setVisible(true);
 	}
 	
+	private static final int MAX_EPOCHS = 100000;
+
 	private static List<Example> getXORExamples(){
 		List<Example> examples = new LinkedList<Example>();
 			
@@ -0,0 +1,51 @@
+package nnet.bench;
+
+import java.util.Random;
+
+import nnet.ActivationFunction;
+import nnet.ActivationFunctions;
+
+/**
+ * Measures the time per activation of each {@link ActivationFunctions}
+ * implementation, applied in bulk to a vector of typical weighted input sums,
+ * and the maximum absolute error against the exact function.
+ */
+public class ActivationBenchmark {
+
+	public static void main(String[] args) {
+		ActivationFunction[] functions = { ActivationFunctions.SIGMOID, ActivationFunctions.FAST_SIGMOID,
+				ActivationFunctions.TANH, ActivationFunctions.FAST_TANH, ActivationFunctions.RELU };
+		ActivationFunction[] exact = { ActivationFunctions.SIGMOID, ActivationFunctions.SIGMOID,
+				ActivationFunctions.TANH, ActivationFunctions.TANH, ActivationFunctions.RELU };
+
+		Random random = new Random(1);
+		float[] inputs = new float[4096];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = (float) random.nextGaussian() * 4;
+		}
+		float[] values = new float[inputs.length];
+
+		for (int f = 0; f < functions.length; f++) {
+			ActivationFunction function = functions[f];
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				for (int rep = 0; rep < REPEATS; rep++) {
+					System.arraycopy(inputs, 0, values, 0, inputs.length);
+					function.apply(values, 0, values.length);
+				}
+				best = Math.min(best, System.nanoTime() - start);
+			}
+
+			float maxError = 0;
+			for (float x = -20; x <= 20; x += 0.0001f) {
+				maxError = Math.max(maxError, Math.abs(function.apply(x) - exact[f].apply(x)));
+			}
+			System.out.println(function.name() + ": " + (float) best / ((long) REPEATS * inputs.length)
+					+ " ns/activation, max error " + maxError);
+		}
+	}
+
+	private static final int ROUNDS = 10;
+	private static final int REPEATS = 500;
+}
@@ -0,0 +1,53 @@
+package nnet.bench;
+
+import nnet.BatchInference;
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+
+/**
+ * Measures records scored per second with one output call per record
+ * against {@link BatchInference} for growing batch sizes, single-threaded
+ * and with one thread per core.
+ */
+public class BatchThroughput {
+
+	public static void main(String[] args) {
+		int[] layers = { 784, 256, 10 };
+		final int records = 4096;
+		final LayeredNet net = new LayeredNet(1050, layers, 0, LayeredNet.DENSE);
+		net.randomlyInitWeights(-0.05f, 0.05f);
+		SyntheticData data = new SyntheticData(records, layers[0], layers[2], 41);
+		final float[][] inputs = data.inputs;
+		final float[][] outputs = new float[records][layers[2]];
+		BenchmarkRunner runner = new BenchmarkRunner(1000, 2000);
+
+		final InferenceContext context = net.newInferenceContext();
+		report("per record", records, runner.measure(new Runnable() {
+			public void run() {
+				for (int s = 0; s < records; s++) {
+					net.output(context, inputs[s], outputs[s]);
+				}
+				BenchmarkRunner.consume(outputs[0][0]);
+			}
+		}).opsPerSecond);
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] blockSizes = { 1, 4, 16, 64, 256 };
+		for (int threads : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+			for (int blockSize : blockSizes) {
+				final BatchInference batch = new BatchInference(net, blockSize, threads);
+				report("batch " + blockSize + ", " + threads + " thread(s)", records, runner.measure(new Runnable() {
+					public void run() {
+						batch.output(inputs, outputs);
+						BenchmarkRunner.consume(outputs[0][0]);
+					}
+				}).opsPerSecond);
+				batch.shutdown();
+			}
+		}
+	}
+
+	private static void report(String name, int records, double callsPerSecond) {
+		System.out.println(String.format("%-28s %10.0f records/s", name, records * callsPerSecond));
+	}
+}
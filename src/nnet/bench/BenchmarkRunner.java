@@ -0,0 +1,97 @@
+package nnet.bench;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A minimal harness for the benchmarks in this package: runs a task for a
+ * warm-up period, then measures its throughput and the bytes the calling
+ * thread allocates per operation, the same figures JMH reports with its GC
+ * profiler.
+ */
+class BenchmarkRunner {
+
+	BenchmarkRunner(long warmupMillis, long measureMillis) {
+		this.warmupNanos = warmupMillis * 1000000L;
+		this.measureNanos = measureMillis * 1000000L;
+	}
+
+	/**
+	 * Runs given task repeatedly and returns its operations per second and bytes
+	 * allocated per operation.
+	 */
+	Result measure(Runnable task) {
+		run(task, warmupNanos);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long bytesBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		long ops = run(task, measureNanos);
+		long nanos = System.nanoTime() - start;
+		long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+		return new Result(ops * 1e9 / nanos, (double) bytes / ops);
+	}
+
+	/**
+	 * Runs given task for at least given time, checking the clock only every
+	 * few calls, and returns the number of calls.
+	 */
+	private static long run(Runnable task, long nanos) {
+		long end = System.nanoTime() + nanos;
+		long ops = 0;
+		int batch = 1;
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < batch; i++) {
+				task.run();
+			}
+			ops += batch;
+			if (batch < 1024) {
+				batch *= 2;
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Returns the bytes the calling thread allocates per run of given task,
+	 * rounded down, after warm-up.
+	 */
+	static long bytesPerCall(Runnable task, int calls) {
+		for (int i = 0; i < calls; i++) {
+			task.run();
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < calls; i++) {
+			task.run();
+		}
+		long after = threads.getThreadAllocatedBytes(thread);
+		return (after - before) / calls;
+	}
+
+	/**
+	 * Keeps results alive, so the JIT cannot drop the computations that
+	 * produced them.
+	 */
+	static void consume(float value) {
+		sink += value;
+	}
+
+	static class Result {
+
+		Result(double opsPerSecond, double bytesPerOp) {
+			this.opsPerSecond = opsPerSecond;
+			this.bytesPerOp = bytesPerOp;
+		}
+
+		final double opsPerSecond;
+		final double bytesPerOp;
+	}
+
+	private static volatile float sink;
+
+	private final long warmupNanos;
+	private final long measureNanos;
+}
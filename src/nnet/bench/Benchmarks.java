@@ -0,0 +1,134 @@
+package nnet.bench;
+
+import java.util.Random;
+
+import nnet.LayeredNet;
+import nnet.MyBackpropagation;
+
+/**
+ * Baseline benchmark suite for the core operations of a {@link LayeredNet}:
+ * forward passes, back-propagation, error propagation, topology queries and
+ * copying, over a range of net shapes and both storage modes.
+ * 
+ * Prints one line per benchmark with throughput and allocated bytes per
+ * operation. Usage:
+ * 
+ * java nnet.bench.Benchmarks [filter] [-quick]
+ * 
+ * where filter restricts the run to benchmarks whose name (shape, storage and
+ * operation, e.g. "784-256-128-10 dense feedForward") contains it.
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) {
+		String filter = "";
+		boolean quick = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-quick")) {
+				quick = true;
+			} else {
+				filter = args[i];
+			}
+		}
+		BenchmarkRunner runner = quick ? new BenchmarkRunner(200, 300) : new BenchmarkRunner(2000, 3000);
+
+		System.out.println(String.format("%-44s %16s %14s", "benchmark", "ops/sec", "bytes/op"));
+		for (int s = 0; s < SHAPES.length; s++) {
+			for (int storage = LayeredNet.MATRIX; storage <= LayeredNet.DENSE; storage++) {
+				run(runner, SHAPES[s], storage, filter);
+			}
+		}
+	}
+
+	private static void run(BenchmarkRunner runner, int[] layers, int storage, String filter) {
+		int neurons = 0;
+		StringBuilder shape = new StringBuilder();
+		for (int i = 0; i < layers.length; i++) {
+			neurons += layers[i];
+			shape.append(i == 0 ? "" : "-").append(layers[i]);
+		}
+		String prefix = shape + (storage == LayeredNet.DENSE ? " dense " : " matrix ");
+
+		final LayeredNet net = new LayeredNet(neurons, layers, 0, storage);
+		Random random = new Random(1);
+		for (int i = 0; i < neurons; i++) {
+			int[] out = net.getOutputNeuronsFor(i);
+			for (int j = 0; j < out.length; j++) {
+				net.setWeight(i, out[j], (random.nextFloat() - 0.5f) * 0.1f);
+			}
+		}
+		final float[] input = new float[layers[0]];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = random.nextFloat();
+		}
+		final float[] target = new float[layers[layers.length - 1]];
+		target[0] = 1;
+		final float[] out = new float[target.length];
+		final float[] output = net.feedForward(input);
+		final int neuronCount = neurons;
+
+		report(runner, filter, prefix + "output", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(net.output(input)[0]);
+			}
+		});
+		report(runner, filter, prefix + "feedForward", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(net.feedForward(input)[0]);
+			}
+		});
+		report(runner, filter, prefix + "output(input, out)", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(net.output(input, out)[0]);
+			}
+		});
+		report(runner, filter, prefix + "backpropagate", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(MyBackpropagation.backpropagate(net, target, output, 0.0001f)[0]);
+			}
+		});
+		report(runner, filter, prefix + "error", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(MyBackpropagation.error(net, target, output)[0]);
+			}
+		});
+		report(runner, filter, prefix + "getInputNeuronsFor (all)", new Runnable() {
+			public void run() {
+				int sum = 0;
+				for (int i = 0; i < neuronCount; i++) {
+					sum += net.getInputNeuronsFor(i).length;
+				}
+				BenchmarkRunner.consume(sum);
+			}
+		});
+		report(runner, filter, prefix + "getOutputNeuronsFor (all)", new Runnable() {
+			public void run() {
+				int sum = 0;
+				for (int i = 0; i < neuronCount; i++) {
+					sum += net.getOutputNeuronsFor(i).length;
+				}
+				BenchmarkRunner.consume(sum);
+			}
+		});
+		report(runner, filter, prefix + "copy", new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(net.copy().neuronCount());
+			}
+		});
+	}
+
+	private static void report(BenchmarkRunner runner, String filter, String name, Runnable task) {
+		if (!name.contains(filter)) {
+			return;
+		}
+		BenchmarkRunner.Result result = runner.measure(task);
+		System.out.println(String.format("%-44s %16.1f %14.1f", name, result.opsPerSecond, result.bytesPerOp));
+	}
+
+	private static final int[][] SHAPES = {
+		{ 2, 2, 1 },
+		{ 196, 100, 10 },
+		{ 784, 100, 10 },
+		{ 784, 256, 128, 10 },
+	};
+}
@@ -0,0 +1,50 @@
+package nnet.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nnet.FrozenNet;
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+
+/**
+ * Measures the inference throughput of one shared {@link FrozenNet} (a
+ * trained 784-100-10 net) served by 1 to 64 threads at once, each thread
+ * holding its own inference context.
+ */
+public class ConcurrentInference {
+
+	public static void main(String[] args) throws InterruptedException {
+		int[] layers = { 784, 100, 10 };
+		LayeredNet net = new LayeredNet(894, layers, 0, LayeredNet.DENSE);
+		net.randomlyInitWeights(-0.1f, 0.1f);
+		final FrozenNet frozen = FrozenNet.of(net);
+		final SyntheticData data = new SyntheticData(256, layers[0], layers[2], 1);
+
+		for (int threads = 1; threads <= 64; threads *= 2) {
+			final AtomicLong calls = new AtomicLong();
+			final CountDownLatch done = new CountDownLatch(threads);
+			final long end = System.nanoTime() + MEASURE_NANOS;
+			for (int t = 0; t < threads; t++) {
+				Thread worker = new Thread() {
+					public void run() {
+						InferenceContext context = frozen.newInferenceContext();
+						float[] out = new float[10];
+						long count = 0;
+						while (System.nanoTime() < end) {
+							frozen.output(context, data.inputs[(int) (count & 255)], out);
+							count++;
+						}
+						calls.addAndGet(count);
+						done.countDown();
+					}
+				};
+				worker.start();
+			}
+			done.await();
+			System.out.println(threads + " threads: " + (long) (calls.get() * 1e9 / MEASURE_NANOS) + " calls/sec");
+		}
+	}
+
+	private static final long MEASURE_NANOS = 2000000000L;
+}
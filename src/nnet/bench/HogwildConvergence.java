@@ -0,0 +1,64 @@
+package nnet.bench;
+
+import nnet.HogwildTrainer;
+import nnet.LayeredNet;
+import nnet.MyBackpropagation;
+
+/**
+ * Compares convergence of single-threaded per-sample training against
+ * asynchronous {@link HogwildTrainer} training with several threads, on the
+ * same data and from the same initial weights. Prints the total error and the
+ * training accuracy after each epoch together with the time taken.
+ */
+public class HogwildConvergence {
+
+	public static void main(String[] args) {
+		int[] layers = { 196, 64, 10 };
+		SyntheticData data = new SyntheticData(5000, layers[0], layers[2], 11);
+		int epochs = 5;
+		float learnRate = 0.005f;
+
+		LayeredNet net = SyntheticData.newNet(layers, 0.1f);
+		long start = System.nanoTime();
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			float totalError = 0;
+			for (int s = 0; s < data.inputs.length; s++) {
+				float[] out = net.feedForward(data.inputs[s]);
+				float[] errout = MyBackpropagation.backpropagate(net, data.targets[s], out, learnRate);
+				for (int i = 0; i < errout.length; i++) {
+					totalError += errout[i] / errout.length;
+				}
+			}
+			report("single", epoch, totalError, accuracy(net, data), start);
+		}
+
+		int[] threadCounts = { 1, 2, 4, 8 };
+		for (int t = 0; t < threadCounts.length; t++) {
+			net = SyntheticData.newNet(layers, 0.1f);
+			HogwildTrainer trainer = new HogwildTrainer(net, threadCounts[t], 5);
+			start = System.nanoTime();
+			for (int epoch = 1; epoch <= epochs; epoch++) {
+				float totalError = trainer.trainEpoch(data.inputs, data.targets, learnRate);
+				report("hogwild x" + threadCounts[t], epoch, totalError, accuracy(net, data), start);
+			}
+			trainer.shutdown();
+		}
+	}
+
+	private static void report(String name, int epoch, float totalError, float accuracy, long start) {
+		System.out.println(name + " epoch " + epoch + ": totalError = " + totalError + ", accuracy = " + accuracy + ", "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	static float accuracy(LayeredNet net, SyntheticData data) {
+		int correct = 0;
+		float[] out = new float[data.targets[0].length];
+		for (int s = 0; s < data.inputs.length; s++) {
+			net.output(data.inputs[s], out);
+			if (SyntheticData.argmax(out) == SyntheticData.argmax(data.targets[s])) {
+				correct++;
+			}
+		}
+		return (float) correct / data.inputs.length;
+	}
+}
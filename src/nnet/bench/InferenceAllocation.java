@@ -0,0 +1,53 @@
+package nnet.bench;
+
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+
+/**
+ * Checks that the buffer-based inference calls of {@link LayeredNet} do not
+ * allocate once warmed up, by reading the allocation counter of the current
+ * thread before and after a number of calls.
+ * 
+ * Exits with status 1 if any call path allocates.
+ */
+public class InferenceAllocation {
+
+	public static void main(String[] args) {
+		int[] layers = { 196, 100, 10 };
+		boolean ok = true;
+		for (int storage = LayeredNet.MATRIX; storage <= LayeredNet.DENSE; storage++) {
+			LayeredNet net = new LayeredNet(306, layers, 0, storage);
+			net.randomlyInitWeights(-1f, 1f);
+			ok &= check(net, storage == LayeredNet.DENSE ? "dense" : "matrix");
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean check(final LayeredNet net, String name) {
+		final float[] input = new float[net.layerSize(0)];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (float) Math.random();
+		}
+		final float[] out = new float[net.layerSize(net.layerCount() - 1)];
+		final InferenceContext context = net.newInferenceContext();
+
+		long netBytes = BenchmarkRunner.bytesPerCall(new Runnable() {
+			public void run() {
+				net.output(input, out);
+			}
+		}, CALLS);
+		long contextBytes = BenchmarkRunner.bytesPerCall(new Runnable() {
+			public void run() {
+				net.output(context, input, out);
+			}
+		}, CALLS);
+
+		System.out.println(name + ": output(input, out) " + netBytes + " bytes/call, output(context, input, out) "
+				+ contextBytes + " bytes/call");
+		return netBytes == 0 && contextBytes == 0;
+	}
+
+	private static final int CALLS = 20000;
+}
@@ -0,0 +1,69 @@
+package nnet.bench;
+
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+import nnet.metrics.InstrumentedInference;
+import nnet.metrics.LatencyHistogram;
+
+/**
+ * Measures the cost of {@link InstrumentedInference}: allocation-free dense
+ * inference called directly, through an enabled wrapper and through a
+ * disabled one, for a small and a larger net. Prints the recorded
+ * percentiles as well.
+ */
+public class InstrumentationOverhead {
+
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner(1000, 2000);
+		int[][] shapes = { { 16, 8, 4 }, { 196, 128, 10 } };
+		for (int[] layers : shapes) {
+			int neurons = 0;
+			for (int size : layers) {
+				neurons += size;
+			}
+			final LayeredNet net = new LayeredNet(neurons, layers, 0, LayeredNet.DENSE);
+			net.randomlyInitWeights(-0.1f, 0.1f);
+			final InstrumentedInference instrumented = new InstrumentedInference(net);
+			final InferenceContext context = net.newInferenceContext();
+			final float[] input = new float[layers[0]];
+			final float[] out = new float[layers[layers.length - 1]];
+			for (int i = 0; i < input.length; i++) {
+				input[i] = i / (float) input.length;
+			}
+
+			String shape = layers[0] + "-" + layers[1] + "-" + layers[2];
+			double direct = report(runner, shape + " direct", 0, new Runnable() {
+				public void run() {
+					BenchmarkRunner.consume(net.output(context, input, out)[0]);
+				}
+			});
+			report(runner, shape + " instrumented", direct, new Runnable() {
+				public void run() {
+					BenchmarkRunner.consume(instrumented.output(context, input, out)[0]);
+				}
+			});
+			instrumented.setEnabled(false);
+			report(runner, shape + " instrumentation disabled", direct, new Runnable() {
+				public void run() {
+					BenchmarkRunner.consume(instrumented.output(context, input, out)[0]);
+				}
+			});
+
+			LatencyHistogram latencies = instrumented.getLatencies();
+			System.out.println(String.format("  p50 %d ns, p99 %d ns, p999 %d ns, max %d ns, %.1f bytes/call",
+					latencies.percentile(0.5), latencies.percentile(0.99), latencies.percentile(0.999), latencies.max(),
+					instrumented.allocatedBytesPerCall()));
+		}
+	}
+
+	/**
+	 * Prints and returns the nanoseconds per call of given task, along with
+	 * the difference to given reference.
+	 */
+	private static double report(BenchmarkRunner runner, String name, double reference, Runnable task) {
+		double nanos = 1e9 / runner.measure(task).opsPerSecond;
+		String overhead = reference == 0 ? "" : String.format(", overhead %+.1f ns", nanos - reference);
+		System.out.println(String.format("%-40s %10.1f ns/call%s", name, nanos, overhead));
+		return nanos;
+	}
+}
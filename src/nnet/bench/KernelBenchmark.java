@@ -0,0 +1,121 @@
+package nnet.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import nnet.Kernels;
+
+/**
+ * Measures the layer kernels of {@link Kernels} against plain scalar loops,
+ * in GFLOP/s: dot products (scalar, lanes and the selected implementation,
+ * which is "vector" when run with --add-modules jdk.incubator.vector), the
+ * dense matrix-vector product of the forward pass (row-major axpy vs. a column
+ * walk as in NNet.getInputActivation), batched matrix-matrix products and
+ * outer-product weight updates.
+ * 
+ * Prints the SIMD related JIT settings of the running JVM first, so results
+ * from machines with AVX2 and AVX-512 can be told apart. Compare, for example,
+ * runs with -XX:UseAVX=2 and -XX:UseAVX=3, or with -XX:-UseSuperWord for a
+ * scalar baseline.
+ */
+public class KernelBenchmark {
+
+	public static void main(String[] args) {
+		System.out.println("kernels: " + Kernels.implementation() + ", UseSuperWord: " + vmOption("UseSuperWord")
+				+ ", UseAVX: " + vmOption("UseAVX") + ", MaxVectorSize: " + vmOption("MaxVectorSize"));
+
+		BenchmarkRunner runner = new BenchmarkRunner(1000, 2000);
+		Random random = new Random(1);
+		final int rows = 784;
+		final int cols = 256;
+		final int batch = 32;
+		final float[] w = randomArray(random, rows * cols);
+		final float[] x = randomArray(random, rows);
+		final float[] y = new float[cols];
+		final float[] e = randomArray(random, cols);
+		final float[] a = randomArray(random, batch * rows);
+		final float[] c = new float[batch * cols];
+
+		report(runner, "dot scalar (n=" + rows + ")", 2.0 * rows, new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(Kernels.dotScalar(x, 0, w, 0, rows));
+			}
+		});
+		report(runner, "dot lanes (n=" + rows + ")", 2.0 * rows, new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(Kernels.dotLanes(x, 0, w, 0, rows));
+			}
+		});
+		report(runner, "dot " + Kernels.implementation() + " (n=" + rows + ")", 2.0 * rows, new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(Kernels.dot(x, 0, w, 0, rows));
+			}
+		});
+		report(runner, "matrix-vector column walk " + rows + "x" + cols, 2.0 * rows * cols, new Runnable() {
+			public void run() {
+				for (int j = 0; j < cols; j++) {
+					float sum = 0;
+					for (int i = 0; i < rows; i++) {
+						sum += w[i * cols + j] * x[i];
+					}
+					y[j] = sum;
+				}
+				BenchmarkRunner.consume(y[0]);
+			}
+		});
+		report(runner, "matrix-vector kernel " + rows + "x" + cols, 2.0 * rows * cols, new Runnable() {
+			public void run() {
+				Kernels.multiplyVector(x, 0, rows, w, cols, y, 0);
+				BenchmarkRunner.consume(y[0]);
+			}
+		});
+		report(runner, "matrix-matrix naive " + batch + "x" + rows + "x" + cols, 2.0 * batch * rows * cols, new Runnable() {
+			public void run() {
+				for (int s = 0; s < batch; s++) {
+					for (int j = 0; j < cols; j++) {
+						float sum = 0;
+						for (int i = 0; i < rows; i++) {
+							sum += a[s * rows + i] * w[i * cols + j];
+						}
+						c[s * cols + j] = sum;
+					}
+				}
+				BenchmarkRunner.consume(c[0]);
+			}
+		});
+		report(runner, "matrix-matrix kernel " + batch + "x" + rows + "x" + cols, 2.0 * batch * rows * cols, new Runnable() {
+			public void run() {
+				Kernels.multiply(a, batch, rows, w, cols, c);
+				BenchmarkRunner.consume(c[0]);
+			}
+		});
+		report(runner, "outer-product update " + rows + "x" + cols, 3.0 * rows * cols, new Runnable() {
+			public void run() {
+				Kernels.addOuterProduct(x, 0, rows, e, 0, cols, 1e-9f, w);
+				BenchmarkRunner.consume(w[0]);
+			}
+		});
+	}
+
+	private static void report(BenchmarkRunner runner, String name, double flops, Runnable task) {
+		BenchmarkRunner.Result result = runner.measure(task);
+		System.out.println(String.format("%-44s %8.2f GFLOP/s", name, result.opsPerSecond * flops / 1e9));
+	}
+
+	private static float[] randomArray(Random random, int length) {
+		float[] v = new float[length];
+		for (int i = 0; i < length; i++) {
+			v[i] = random.nextFloat() - 0.5f;
+		}
+		return v;
+	}
+
+	private static String vmOption(String name) {
+		try {
+			return ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class).getVMOption(name)
+					.getValue();
+		} catch (RuntimeException e) {
+			return "n/a";
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package nnet.bench;
+
+import nnet.LayeredNet;
+import nnet.LearningRateSchedules;
+import nnet.MiniBatchTrainer;
+import nnet.Optimizer;
+import nnet.Optimizers;
+import nnet.TrainingScheduler;
+
+/**
+ * Compares the epochs and wall clock time each {@link Optimizers optimizer}
+ * needs to reach a target validation accuracy, from the same initial weights
+ * and on the same data, with mini-batch training.
+ */
+public class OptimizerConvergence {
+
+	public static void main(String[] args) {
+		int[] layers = { 64, 32, 10 };
+		SyntheticData data = new SyntheticData(4000, layers[0], layers[2], 21);
+		SyntheticData training = data.range(0, 3000);
+		SyntheticData validation = data.range(3000, 4000);
+		float targetAccuracy = 0.93f;
+
+		String[] names = { "plain", "sgd", "momentum 0.9", "nesterov 0.9", "rmsprop 0.9", "adam" };
+		Optimizer[] optimizers = { null, Optimizers.sgd(), Optimizers.momentum(0.9f), Optimizers.nesterov(0.9f),
+				Optimizers.rmsProp(0.9f), Optimizers.adam() };
+		float[] learnRates = { 0.1f, 0.1f, 0.01f, 0.01f, 0.001f, 0.001f };
+
+		for (int i = 0; i < optimizers.length; i++) {
+			LayeredNet net = SyntheticData.newNet(layers, 0.2f);
+			MiniBatchTrainer trainer = new MiniBatchTrainer(net, 32);
+			trainer.setOptimizer(optimizers[i]);
+			TrainingScheduler scheduler = new TrainingScheduler(trainer, LearningRateSchedules.constant(learnRates[i]));
+			scheduler.setValidationSet(validation.inputs, validation.targets);
+			scheduler.setTargetAccuracy(targetAccuracy);
+			scheduler.setMaxEpochs(50);
+			TrainingScheduler.Result result = scheduler.run(training.inputs, training.targets);
+			System.out.println(String.format("%-14s lr %-6s %s", names[i], learnRates[i], result));
+		}
+	}
+}
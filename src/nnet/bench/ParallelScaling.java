@@ -0,0 +1,51 @@
+package nnet.bench;
+
+import java.util.Arrays;
+
+import nnet.LayeredNet;
+import nnet.ParallelTrainer;
+
+/**
+ * Measures the throughput of {@link ParallelTrainer} on a 784-100-10 net for
+ * 1 to 8 (or the number of available cores, if larger) threads, and checks
+ * that two runs with the same seed and thread count end up with identical
+ * weights.
+ */
+public class ParallelScaling {
+
+	public static void main(String[] args) {
+		int[] layers = { 784, 100, 10 };
+		SyntheticData data = new SyntheticData(6000, layers[0], layers[2], 7);
+		int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			LayeredNet net = SyntheticData.newNet(layers, 0.1f);
+			ParallelTrainer trainer = new ParallelTrainer(net, 256, threads, 1);
+			trainer.trainEpoch(data.inputs, data.targets, 0.05f);
+			trainer.resetStatistics();
+			for (int epoch = 0; epoch < 3; epoch++) {
+				trainer.trainEpoch(data.inputs, data.targets, 0.05f);
+			}
+			trainer.shutdown();
+			double rate = trainer.samplesPerSecond();
+			if (threads == 1) {
+				single = rate;
+			}
+			System.out.println(threads + " threads: " + (int) rate + " samples/sec, speedup " + (float) (rate / single));
+		}
+
+		float[] first = trainTwice(layers, data, 4);
+		float[] second = trainTwice(layers, data, 4);
+		System.out.println("deterministic: " + Arrays.equals(first, second));
+	}
+
+	private static float[] trainTwice(int[] layers, SyntheticData data, int threads) {
+		LayeredNet net = SyntheticData.newNet(layers, 0.1f);
+		ParallelTrainer trainer = new ParallelTrainer(net, 64, threads, 99);
+		trainer.trainEpoch(data.inputs, data.targets, 0.05f);
+		trainer.trainEpoch(data.inputs, data.targets, 0.05f);
+		trainer.shutdown();
+		return net.getLayerWeights(0).clone();
+	}
+}
@@ -0,0 +1,76 @@
+package nnet.bench;
+
+import nnet.GradientBackpropagation;
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+import nnet.PrunedNet;
+import nnet.Pruning;
+
+/**
+ * Prunes a trained net to increasing sparsity, by weight magnitude and by
+ * sensitivity, and reports accuracy on held-out samples and the throughput of
+ * the re-packed {@link PrunedNet} at each level, next to the dense net.
+ */
+public class PruningCurve {
+
+	public static void main(String[] args) {
+		int[] layers = { 256, 128, 10 };
+		SyntheticData data = new SyntheticData(6000, layers[0], layers[2], 51);
+		SyntheticData training = data.range(0, 5000);
+		SyntheticData test = data.range(5000, 6000);
+
+		LayeredNet net = new LayeredNet(394, layers, 0, LayeredNet.DENSE);
+		net.randomlyInitWeights(-0.05f, 0.05f);
+		GradientBackpropagation trainer = new GradientBackpropagation(net);
+		for (int epoch = 0; epoch < 10; epoch++) {
+			trainer.trainEpoch(training.inputs, training.targets, 0.01f);
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(500, 1000);
+		final float[] input = test.inputs[0];
+		final float[] out = new float[layers[2]];
+		final LayeredNet dense = net;
+		final InferenceContext denseContext = net.newInferenceContext();
+		double denseOps = runner.measure(new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(dense.output(denseContext, input, out)[0]);
+			}
+		}).opsPerSecond;
+		System.out.println(String.format("dense        accuracy %.4f %10.0f ops/s", accuracy(PrunedNet.of(net), test.inputs,
+				test.targets), denseOps));
+
+		float[] levels = { 0f, 0.5f, 0.7f, 0.8f, 0.9f, 0.95f, 0.98f };
+		String[] methods = { "magnitude", "sensitivity" };
+		for (int m = 0; m < methods.length; m++) {
+			for (int i = 0; i < levels.length; i++) {
+				LayeredNet copy = (LayeredNet) net.copy();
+				if (m == 0) {
+					Pruning.pruneByMagnitude(copy, levels[i]);
+				} else {
+					Pruning.pruneBySensitivity(copy, training.inputs, levels[i]);
+				}
+				final PrunedNet pruned = PrunedNet.of(copy);
+				final InferenceContext context = pruned.newInferenceContext();
+				double ops = runner.measure(new Runnable() {
+					public void run() {
+						BenchmarkRunner.consume(pruned.output(context, input, out)[0]);
+					}
+				}).opsPerSecond;
+				System.out.println(String.format("%-12s sparsity %.2f accuracy %.4f %10.0f ops/s (%.2fx dense)",
+						methods[m], pruned.sparsity(), accuracy(pruned, test.inputs, test.targets), ops, ops / denseOps));
+			}
+		}
+	}
+
+	private static double accuracy(PrunedNet net, float[][] inputs, float[][] targets) {
+		InferenceContext context = net.newInferenceContext();
+		float[] out = new float[targets[0].length];
+		int correct = 0;
+		for (int s = 0; s < inputs.length; s++) {
+			if (SyntheticData.argmax(net.output(context, inputs[s], out)) == SyntheticData.argmax(targets[s])) {
+				correct++;
+			}
+		}
+		return correct / (double) inputs.length;
+	}
+}
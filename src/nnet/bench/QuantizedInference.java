@@ -0,0 +1,92 @@
+package nnet.bench;
+
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+import nnet.MiniBatchTrainer;
+import nnet.Optimizers;
+import nnet.QuantizedNet;
+
+/**
+ * Compares int8 {@link QuantizedNet} inference against the float net it was
+ * made from: accuracy on held-out samples, weight memory and throughput, the
+ * latter for the trained net and for a net with large layers.
+ */
+public class QuantizedInference {
+
+	public static void main(String[] args) {
+		int[] layers = { 196, 128, 10 };
+		SyntheticData data = new SyntheticData(6000, layers[0], layers[2], 31);
+		SyntheticData training = data.range(0, 5000);
+		SyntheticData test = data.range(5000, 6000);
+
+		LayeredNet net = new LayeredNet(334, layers, 0, LayeredNet.DENSE);
+		net.randomlyInitWeights(-0.1f, 0.1f);
+		MiniBatchTrainer trainer = new MiniBatchTrainer(net, 32);
+		trainer.setOptimizer(Optimizers.nesterov(0.9f));
+		for (int epoch = 0; epoch < 10; epoch++) {
+			trainer.trainEpoch(training.inputs, training.targets, 0.01f);
+		}
+		QuantizedNet quantized = QuantizedNet.of(net);
+
+		InferenceContext floatContext = net.newInferenceContext();
+		InferenceContext intContext = quantized.newInferenceContext();
+		float[] out = new float[layers[2]];
+		int floatCorrect = 0;
+		int intCorrect = 0;
+		for (int s = 0; s < test.inputs.length; s++) {
+			int expected = SyntheticData.argmax(test.targets[s]);
+			if (SyntheticData.argmax(net.output(floatContext, test.inputs[s], out)) == expected) {
+				floatCorrect++;
+			}
+			if (SyntheticData.argmax(quantized.output(intContext, test.inputs[s], out)) == expected) {
+				intCorrect++;
+			}
+		}
+		System.out.println(String.format("accuracy float %.4f, int8 %.4f, delta %+.4f, max output error %.5f",
+				floatCorrect / (double) test.inputs.length, intCorrect / (double) test.inputs.length,
+				(intCorrect - floatCorrect) / (double) test.inputs.length, quantized.maxError(net, test.inputs)));
+
+		BenchmarkRunner runner = new BenchmarkRunner(1000, 2000);
+		compare(runner, net, quantized, test.inputs[0]);
+
+		int[] large = { 1024, 1024, 10 };
+		LayeredNet largeNet = new LayeredNet(2058, large, 0, LayeredNet.DENSE);
+		largeNet.randomlyInitWeights(-0.05f, 0.05f);
+		float[] input = new float[large[0]];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (i % 7) / 7f;
+		}
+		compare(runner, largeNet, QuantizedNet.of(largeNet), input);
+	}
+
+	private static void compare(BenchmarkRunner runner, final LayeredNet net, final QuantizedNet quantized,
+			final float[] input) {
+		final InferenceContext floatContext = net.newInferenceContext();
+		final InferenceContext intContext = quantized.newInferenceContext();
+		final float[] out = new float[net.layerSize(net.layerCount() - 1)];
+		long floatBytes = 0;
+		for (int l = 0; l < net.layerCount() - 1; l++) {
+			floatBytes += 4L * net.layerSize(l) * net.layerSize(l + 1);
+		}
+
+		double floatOps = runner.measure(new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(net.output(floatContext, input, out)[0]);
+			}
+		}).opsPerSecond;
+		double intOps = runner.measure(new Runnable() {
+			public void run() {
+				BenchmarkRunner.consume(quantized.output(intContext, input, out)[0]);
+			}
+		}).opsPerSecond;
+
+		StringBuilder shape = new StringBuilder();
+		for (int l = 0; l < net.layerCount(); l++) {
+			shape.append(l == 0 ? "" : "-").append(net.layerSize(l));
+		}
+		System.out.println(String.format("%-14s weights float %8d bytes, int8 %8d bytes (%.1fx less)", shape,
+				floatBytes, quantized.weightBytes(), floatBytes / (double) quantized.weightBytes()));
+		System.out.println(String.format("%-14s float %10.0f ops/s, int8 %10.0f ops/s (%.2fx)", shape, floatOps, intOps,
+				intOps / floatOps));
+	}
+}
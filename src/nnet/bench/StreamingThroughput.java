@@ -0,0 +1,91 @@
+package nnet.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import nnet.LayeredNet;
+import nnet.MiniBatchTrainer;
+import nnet.data.BinarySource;
+import nnet.data.StreamingDataset;
+
+/**
+ * Compares mini-batch training from memory against training from a binary
+ * sample file streamed through {@link StreamingDataset}, and reports how long
+ * the trainer had to wait for data.
+ */
+public class StreamingThroughput {
+
+	public static void main(String[] args) throws IOException {
+		int samples = 20000;
+		int inputSize = 196;
+		int outputSize = 10;
+		int batchSize = 32;
+		int epochs = 3;
+		SyntheticData data = new SyntheticData(samples, inputSize, outputSize, 1);
+
+		Path file = Files.createTempFile("nnet-samples", ".bin");
+		try {
+			write(data, file);
+			int[] layers = { inputSize, 64, outputSize };
+
+			LayeredNet net = new LayeredNet(inputSize + 64 + outputSize, layers, 0, LayeredNet.DENSE);
+			net.randomlyInitWeights(-0.1f, 0.1f);
+			MiniBatchTrainer trainer = new MiniBatchTrainer(net, batchSize);
+			long start = System.nanoTime();
+			for (int e = 0; e < epochs; e++) {
+				trainer.trainEpoch(data.inputs, data.targets, 0.01f);
+			}
+			report("in memory", samples * epochs, System.nanoTime() - start, 0);
+
+			net = new LayeredNet(inputSize + 64 + outputSize, layers, 0, LayeredNet.DENSE);
+			net.randomlyInitWeights(-0.1f, 0.1f);
+			trainer = new MiniBatchTrainer(net, batchSize);
+			StreamingDataset stream = new StreamingDataset(new BinarySource(file, inputSize, outputSize), batchSize,
+					4096, 1);
+			try {
+				start = System.nanoTime();
+				for (int e = 0; e < epochs; e++) {
+					trainer.trainEpoch(stream, 0.01f);
+				}
+				report("streamed", samples * epochs, System.nanoTime() - start, stream.getWaitNanos());
+			} finally {
+				stream.close();
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void report(String name, long samples, long nanos, long waitNanos) {
+		System.out.println(String.format("%-10s %10.0f samples/s, waited for data %5.1f%% of the time", name,
+				samples * 1e9 / nanos, 100.0 * waitNanos / nanos));
+	}
+
+	private static void write(SyntheticData data, Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(4 * (data.inputs[0].length + data.targets[0].length))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			for (int s = 0; s < data.inputs.length; s++) {
+				buffer.clear();
+				for (float v : data.inputs[s]) {
+					buffer.putFloat(v);
+				}
+				for (float v : data.targets[s]) {
+					buffer.putFloat(v);
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package nnet.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import nnet.LayeredNet;
+
+/**
+ * A reproducible, learnable classification data set for benchmarks: inputs
+ * are uniform in [0, 1], and each target is the one-hot encoding of the
+ * largest component of a fixed random projection of the input.
+ */
+class SyntheticData {
+
+	SyntheticData(int samples, int inputSize, int outputSize, long seed) {
+		Random random = new Random(seed);
+		float[][] projection = new float[outputSize][inputSize];
+		for (int i = 0; i < outputSize; i++) {
+			for (int j = 0; j < inputSize; j++) {
+				projection[i][j] = (float) random.nextGaussian();
+			}
+		}
+
+		inputs = new float[samples][inputSize];
+		targets = new float[samples][outputSize];
+		for (int s = 0; s < samples; s++) {
+			for (int j = 0; j < inputSize; j++) {
+				inputs[s][j] = random.nextFloat();
+			}
+			int best = 0;
+			float bestScore = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < outputSize; i++) {
+				float score = 0;
+				for (int j = 0; j < inputSize; j++) {
+					score += projection[i][j] * inputs[s][j];
+				}
+				if (score > bestScore) {
+					bestScore = score;
+					best = i;
+				}
+			}
+			targets[s][best] = 1;
+		}
+	}
+
+	private SyntheticData(float[][] inputs, float[][] targets) {
+		this.inputs = inputs;
+		this.targets = targets;
+	}
+
+	/**
+	 * Returns the samples from index from (inclusive) to index to (exclusive),
+	 * to split off validation or test samples.
+	 */
+	SyntheticData range(int from, int to) {
+		return new SyntheticData(Arrays.copyOfRange(inputs, from, to), Arrays.copyOfRange(targets, from, to));
+	}
+
+	/**
+	 * Returns a new DENSE net with weights uniform in [-scale / 2, scale / 2),
+	 * drawn with a fixed seed rather than Math.random(), so that runs compared
+	 * against each other start from the same weights.
+	 */
+	static LayeredNet newNet(int[] layers, float scale) {
+		int neurons = 0;
+		for (int l = 0; l < layers.length; l++) {
+			neurons += layers[l];
+		}
+		LayeredNet net = new LayeredNet(neurons, layers, 0, LayeredNet.DENSE);
+		Random random = new Random(3);
+		for (int l = 0; l < layers.length - 1; l++) {
+			float[] w = net.getLayerWeights(l);
+			for (int i = 0; i < w.length; i++) {
+				w[i] = (random.nextFloat() - 0.5f) * scale;
+			}
+		}
+		return net;
+	}
+
+	/**
+	 * Returns the index of the largest component of given vector.
+	 */
+	static int argmax(float[] v) {
+		int best = 0;
+		for (int i = 1; i < v.length; i++) {
+			if (v[i] > v[best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	final float[][] inputs;
+	final float[][] targets;
+}
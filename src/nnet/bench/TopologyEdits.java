@@ -0,0 +1,75 @@
+package nnet.bench;
+
+import java.util.Random;
+
+import nnet.NNet;
+
+/**
+ * Measures structural edits on an {@link NNet} the way neuro-evolution makes
+ * them: each step removes the oldest connection and adds a random new one,
+ * followed by topology queries, one step at a time and in batches between
+ * beginEdits and commitEdits. The number of connections stays the same
+ * throughout.
+ */
+public class TopologyEdits {
+
+	public static void main(String[] args) {
+		final int neurons = 2000;
+		final int batch = 500;
+		final NNet net = new NNet(neurons);
+		final Random random = new Random(7);
+		final int[] from = new int[10 * neurons];
+		final int[] to = new int[from.length];
+		net.beginEdits();
+		for (int k = 0; k < from.length; k++) {
+			from[k] = random.nextInt(neurons);
+			to[k] = random.nextInt(neurons);
+			net.connect(from[k], to[k], random.nextFloat());
+		}
+		net.commitEdits();
+		final int[] oldest = new int[1];
+		BenchmarkRunner runner = new BenchmarkRunner(1000, 2000);
+
+		report("step + isInputNeuron", 1, runner.measure(new Runnable() {
+			public void run() {
+				int k = step(net, from, to, oldest, random);
+				BenchmarkRunner.consume(net.isInputNeuron(to[k]) ? 1 : 0);
+			}
+		}).opsPerSecond);
+
+		report("step + neighbour lists", 1, runner.measure(new Runnable() {
+			public void run() {
+				int k = step(net, from, to, oldest, random);
+				BenchmarkRunner.consume(net.getInputNeuronsFor(to[k]).length + net.getOutputNeuronsFor(from[k]).length);
+			}
+		}).opsPerSecond);
+
+		report("batch of " + batch + " steps + inputNeurons", batch, runner.measure(new Runnable() {
+			public void run() {
+				net.beginEdits();
+				for (int s = 0; s < batch; s++) {
+					step(net, from, to, oldest, random);
+				}
+				net.commitEdits();
+				BenchmarkRunner.consume(net.inputNeurons().length);
+			}
+		}).opsPerSecond);
+	}
+
+	/**
+	 * Replaces the oldest connection by a random new one and returns its slot.
+	 */
+	private static int step(NNet net, int[] from, int[] to, int[] oldest, Random random) {
+		int k = oldest[0];
+		oldest[0] = (k + 1) % from.length;
+		net.disconnect(from[k], to[k]);
+		from[k] = random.nextInt(net.neuronCount());
+		to[k] = random.nextInt(net.neuronCount());
+		net.connect(from[k], to[k], 1);
+		return k;
+	}
+
+	private static void report(String name, int stepsPerOp, double opsPerSecond) {
+		System.out.println(String.format("%-36s %12.0f steps/s", name, stepsPerOp * opsPerSecond));
+	}
+}
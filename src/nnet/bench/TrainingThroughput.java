@@ -0,0 +1,43 @@
+package nnet.bench;
+
+import nnet.LayeredNet;
+import nnet.MiniBatchTrainer;
+import nnet.MyBackpropagation;
+
+/**
+ * Compares training throughput (samples per second) of per-sample
+ * back-propagation against mini-batch training at different batch sizes, on
+ * a 196-100-10 net.
+ */
+public class TrainingThroughput {
+
+	public static void main(String[] args) {
+		int[] layers = { 196, 100, 10 };
+		int neurons = 306;
+		SyntheticData data = new SyntheticData(4000, layers[0], layers[2], 42);
+
+		LayeredNet net = new LayeredNet(neurons, layers, 0, LayeredNet.DENSE);
+		net.randomlyInitWeights(-0.1f, 0.1f);
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int s = 0; s < data.inputs.length; s++) {
+				float[] out = net.feedForward(data.inputs[s]);
+				MyBackpropagation.backpropagate(net, data.targets[s], out, 0.01f);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("per-sample: " + (int) (data.inputs.length / seconds) + " samples/sec");
+		}
+
+		int[] batchSizes = { 1, 8, 32, 128 };
+		for (int b = 0; b < batchSizes.length; b++) {
+			net = new LayeredNet(neurons, layers, 0, LayeredNet.DENSE);
+			net.randomlyInitWeights(-0.1f, 0.1f);
+			MiniBatchTrainer trainer = new MiniBatchTrainer(net, batchSizes[b]);
+			for (int round = 0; round < 3; round++) {
+				trainer.resetStatistics();
+				trainer.trainEpoch(data.inputs, data.targets, 0.01f);
+			}
+			System.out.println("batch " + batchSizes[b] + ": " + (int) trainer.samplesPerSecond() + " samples/sec");
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package nnet.data;
+
+/**
+ * A block of samples as delivered by {@link StreamingDataset}. The arrays are
+ * allocated once with room for a full batch and reused; only the first
+ * {@link #size()} rows are valid.
+ */
+public final class Batch {
+
+	Batch(int capacity, int inputSize, int targetSize) {
+		this.inputs = new float[capacity][inputSize];
+		this.targets = new float[capacity][targetSize];
+	}
+
+	public float[][] inputs() {
+		return inputs;
+	}
+
+	public float[][] targets() {
+		return targets;
+	}
+
+	/**
+	 * Returns the number of samples in this batch.
+	 */
+	public int size() {
+		return size;
+	}
+
+	final float[][] inputs;
+	final float[][] targets;
+	int size;
+}
@@ -0,0 +1,97 @@
+package nnet.data;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads samples from a file of little-endian floats, one record of inputSize
+ * input values followed by targetSize target values per sample, without any
+ * header.
+ * 
+ * The file is memory-mapped one window of whole records at a time, so files
+ * of any size can be read while only the current window is mapped.
+ */
+public class BinarySource implements SampleSource {
+
+	public BinarySource(Path file, int inputSize, int targetSize) throws IOException {
+		this(file, inputSize, targetSize, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates a source mapping about windowBytes bytes of the file at a time.
+	 */
+	public BinarySource(Path file, int inputSize, int targetSize, int windowBytes) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.inputSize = inputSize;
+		this.targetSize = targetSize;
+		long recordBytes = 4L * (inputSize + targetSize);
+		long size = channel.size();
+		if (size % recordBytes != 0) {
+			channel.close();
+			throw new IOException("Size of " + file + " is not a multiple of the record size " + recordBytes);
+		}
+		this.count = size / recordBytes;
+		this.recordsPerWindow = Math.max(1, windowBytes / recordBytes);
+		reset();
+	}
+
+	/**
+	 * Returns the number of samples in the file.
+	 */
+	public long size() {
+		return count;
+	}
+
+	@Override
+	public int inputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int targetSize() {
+		return targetSize;
+	}
+
+	@Override
+	public boolean next(float[] input, float[] target) throws IOException {
+		if (position == count) {
+			return false;
+		}
+		if (window == null || !window.hasRemaining()) {
+			long records = Math.min(recordsPerWindow, count - position);
+			long recordBytes = 4L * (inputSize + targetSize);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position * recordBytes, records * recordBytes)
+					.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		}
+		window.get(input, 0, inputSize);
+		window.get(target, 0, targetSize);
+		position++;
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		position = 0;
+		window = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	private static final int DEFAULT_WINDOW = 1 << 24;
+
+	private final FileChannel channel;
+	private final int inputSize;
+	private final int targetSize;
+	private final long count;
+	private final long recordsPerWindow;
+	private FloatBuffer window;
+	private long position;
+}
@@ -0,0 +1,52 @@
+package nnet.data;
+
+/**
+ * Maps values in [min, max] linearly onto the 256 values of an unsigned byte
+ * and back. Values outside the range are clamped. The error of a round trip
+ * is at most (max - min) / 510.
+ */
+public class ByteQuantizer {
+
+	public ByteQuantizer(float min, float max) {
+		if (!(max > min)) {
+			throw new IllegalArgumentException("Empty range [" + min + ", " + max + "]");
+		}
+		this.min = min;
+		this.max = max;
+		this.step = (max - min) / 255;
+	}
+
+	public float getMin() {
+		return min;
+	}
+
+	public float getMax() {
+		return max;
+	}
+
+	/**
+	 * Encodes n values starting at in[inOffset] into out, starting at
+	 * out[outOffset].
+	 */
+	public void encode(float[] in, int inOffset, byte[] out, int outOffset, int n) {
+		float inverse = 1 / step;
+		for (int i = 0; i < n; i++) {
+			float v = Math.min(max, Math.max(min, in[inOffset + i]));
+			out[outOffset + i] = (byte) (int) ((v - min) * inverse + 0.5f);
+		}
+	}
+
+	/**
+	 * Decodes n bytes starting at in[inOffset] into out, starting at
+	 * out[outOffset].
+	 */
+	public void decode(byte[] in, int inOffset, float[] out, int outOffset, int n) {
+		for (int i = 0; i < n; i++) {
+			out[outOffset + i] = min + (in[inOffset + i] & 0xff) * step;
+		}
+	}
+
+	private final float min;
+	private final float max;
+	private final float step;
+}
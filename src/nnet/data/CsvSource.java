@@ -0,0 +1,89 @@
+package nnet.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads samples from a text file with one sample per line: inputSize input
+ * values followed by targetSize target values, separated by commas. Empty
+ * lines and lines starting with '#' are skipped.
+ */
+public class CsvSource implements SampleSource {
+
+	public CsvSource(Path file, int inputSize, int targetSize) throws IOException {
+		this.file = file;
+		this.inputSize = inputSize;
+		this.targetSize = targetSize;
+		this.reader = Files.newBufferedReader(file, Charset.forName("UTF-8"));
+	}
+
+	@Override
+	public int inputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int targetSize() {
+		return targetSize;
+	}
+
+	@Override
+	public boolean next(float[] input, float[] target) throws IOException {
+		String line;
+		do {
+			line = reader.readLine();
+			lineNumber++;
+			if (line == null) {
+				return false;
+			}
+		} while (line.isEmpty() || line.charAt(0) == '#');
+
+		int start = 0;
+		for (int i = 0; i < inputSize + targetSize; i++) {
+			int end = line.indexOf(',', start);
+			if (end < 0) {
+				end = line.length();
+			}
+			if (start > line.length() || (end == line.length() && i < inputSize + targetSize - 1)) {
+				throw new IOException(file + ":" + lineNumber + ": expected " + (inputSize + targetSize) + " values");
+			}
+			float value;
+			try {
+				value = Float.parseFloat(line.substring(start, end).trim());
+			} catch (NumberFormatException e) {
+				throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+			}
+			if (i < inputSize) {
+				input[i] = value;
+			} else {
+				target[i - inputSize] = value;
+			}
+			start = end + 1;
+		}
+		if (start <= line.length()) {
+			throw new IOException(file + ":" + lineNumber + ": expected " + (inputSize + targetSize) + " values");
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		reader.close();
+		reader = Files.newBufferedReader(file, Charset.forName("UTF-8"));
+		lineNumber = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private final Path file;
+	private final int inputSize;
+	private final int targetSize;
+	private BufferedReader reader;
+	private int lineNumber;
+}
@@ -0,0 +1,139 @@
+package nnet.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads samples from a pair of files in the IDX format of the MNIST data set:
+ * an image file of unsigned bytes (magic 0x00000803), which become inputs
+ * scaled to [0, 1], and a label file of unsigned bytes (magic 0x00000801),
+ * which become one-hot targets.
+ */
+public class IdxSource implements SampleSource {
+
+	public IdxSource(Path images, Path labels, int classes) throws IOException {
+		this.imageChannel = FileChannel.open(images, StandardOpenOption.READ);
+		this.labelChannel = FileChannel.open(labels, StandardOpenOption.READ);
+		this.classes = classes;
+		try {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			read(imageChannel, header, 16);
+			header.flip();
+			if (header.getInt() != IMAGE_MAGIC) {
+				throw new IOException("Not an IDX image file: " + images);
+			}
+			this.count = header.getInt();
+			this.inputSize = header.getInt() * header.getInt();
+
+			header.clear();
+			read(labelChannel, header, 8);
+			header.flip();
+			if (header.getInt() != LABEL_MAGIC) {
+				throw new IOException("Not an IDX label file: " + labels);
+			}
+			if (header.getInt() != count) {
+				throw new IOException("Number of labels differs from number of images");
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		this.imageBuffer = ByteBuffer.allocate(Math.max(inputSize, BUFFER_SIZE / inputSize * inputSize));
+		this.labelBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		reset();
+	}
+
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public int inputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int targetSize() {
+		return classes;
+	}
+
+	@Override
+	public boolean next(float[] input, float[] target) throws IOException {
+		if (position == count) {
+			return false;
+		}
+		if (imageBuffer.remaining() < inputSize) {
+			imageBuffer.compact();
+			read(imageChannel, imageBuffer, inputSize - imageBuffer.position());
+			imageBuffer.flip();
+		}
+		if (!labelBuffer.hasRemaining()) {
+			labelBuffer.clear();
+			read(labelChannel, labelBuffer, 1);
+			labelBuffer.flip();
+		}
+		for (int i = 0; i < inputSize; i++) {
+			input[i] = (imageBuffer.get() & 0xff) / 255f;
+		}
+		int label = labelBuffer.get() & 0xff;
+		if (label >= classes) {
+			throw new IOException("Label " + label + " of sample " + position + " exceeds number of classes");
+		}
+		for (int i = 0; i < classes; i++) {
+			target[i] = 0;
+		}
+		target[label] = 1;
+		position++;
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		imageChannel.position(16);
+		labelChannel.position(8);
+		imageBuffer.clear().limit(0);
+		labelBuffer.clear().limit(0);
+		position = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			imageChannel.close();
+		} finally {
+			labelChannel.close();
+		}
+	}
+
+	/**
+	 * Reads from given channel into given buffer until at least given number of
+	 * bytes were read or the buffer is full.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, int atLeast) throws IOException {
+		int read = 0;
+		while (read < atLeast && buffer.hasRemaining()) {
+			int n = channel.read(buffer);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of IDX file");
+			}
+			read += n;
+		}
+	}
+
+	private static final int IMAGE_MAGIC = 0x00000803;
+	private static final int LABEL_MAGIC = 0x00000801;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel imageChannel;
+	private final FileChannel labelChannel;
+	private final ByteBuffer imageBuffer;
+	private final ByteBuffer labelBuffer;
+	private final int classes;
+	private int count;
+	private int inputSize;
+	private int position;
+}
@@ -0,0 +1,89 @@
+package nnet.data;
+
+/**
+ * Normalizes each component of a vector as (x - mean) * scale, with either
+ * one mean and scale for all components or one per component. Works in place.
+ */
+public class Normalization implements Preprocessor {
+
+	/**
+	 * Creates a normalization mapping [min, max] onto [0, 1].
+	 */
+	public static Normalization range(int size, float min, float max) {
+		return new Normalization(size, min, 1f / (max - min));
+	}
+
+	/**
+	 * Creates a normalization to zero mean and unit variance from the per
+	 * component mean and standard deviation of given samples. Components with
+	 * zero deviation are only centered.
+	 */
+	public static Normalization standardize(float[][] samples) {
+		int size = samples[0].length;
+		double[] sum = new double[size];
+		double[] sumSquares = new double[size];
+		for (float[] sample : samples) {
+			for (int i = 0; i < size; i++) {
+				sum[i] += sample[i];
+				sumSquares[i] += (double) sample[i] * sample[i];
+			}
+		}
+		float[] mean = new float[size];
+		float[] scale = new float[size];
+		for (int i = 0; i < size; i++) {
+			double m = sum[i] / samples.length;
+			double deviation = Math.sqrt(Math.max(0, sumSquares[i] / samples.length - m * m));
+			mean[i] = (float) m;
+			scale[i] = deviation > 0 ? (float) (1 / deviation) : 1;
+		}
+		return new Normalization(mean, scale);
+	}
+
+	public Normalization(int size, float mean, float scale) {
+		this.size = size;
+		this.mean = null;
+		this.scale = null;
+		this.commonMean = mean;
+		this.commonScale = scale;
+	}
+
+	public Normalization(float[] mean, float[] scale) {
+		if (mean.length != scale.length) {
+			throw new IllegalArgumentException("Mean and scale differ in length");
+		}
+		this.size = mean.length;
+		this.mean = mean.clone();
+		this.scale = scale.clone();
+		this.commonMean = 0;
+		this.commonScale = 1;
+	}
+
+	@Override
+	public int inputSize() {
+		return size;
+	}
+
+	@Override
+	public int outputSize() {
+		return size;
+	}
+
+	@Override
+	public void apply(float[] in, int inOffset, float[] out, int outOffset) {
+		if (mean == null) {
+			for (int i = 0; i < size; i++) {
+				out[outOffset + i] = (in[inOffset + i] - commonMean) * commonScale;
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				out[outOffset + i] = (in[inOffset + i] - mean[i]) * scale[i];
+			}
+		}
+	}
+
+	private final int size;
+	private final float[] mean;
+	private final float[] scale;
+	private final float commonMean;
+	private final float commonScale;
+}
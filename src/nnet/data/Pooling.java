@@ -0,0 +1,90 @@
+package nnet.data;
+
+/**
+ * Downscales images of width x height pixels, stored row by row, by a given
+ * factor in both directions, replacing each block of factor x factor pixels
+ * by their average or maximum. Incomplete blocks at the right and bottom
+ * edges are dropped.
+ * 
+ * For example, new Pooling(28, 28, 2, Pooling.AVERAGE) turns 28x28 MNIST
+ * digits into 14x14.
+ */
+public class Pooling implements Preprocessor {
+
+	public static final int AVERAGE = 0;
+	public static final int MAX = 1;
+
+	public Pooling(int width, int height, int factor, int mode) {
+		if (factor < 1 || factor > width || factor > height) {
+			throw new IllegalArgumentException("Invalid pooling factor " + factor + " for " + width + "x" + height);
+		}
+		if (mode != AVERAGE && mode != MAX) {
+			throw new IllegalArgumentException("Unknown pooling mode: " + mode);
+		}
+		this.width = width;
+		this.height = height;
+		this.factor = factor;
+		this.mode = mode;
+	}
+
+	@Override
+	public int inputSize() {
+		return width * height;
+	}
+
+	@Override
+	public int outputSize() {
+		return (width / factor) * (height / factor);
+	}
+
+	public int outputWidth() {
+		return width / factor;
+	}
+
+	public int outputHeight() {
+		return height / factor;
+	}
+
+	@Override
+	public void apply(float[] in, int inOffset, float[] out, int outOffset) {
+		int outWidth = width / factor;
+		int outHeight = height / factor;
+		for (int y = 0; y < outHeight; y++) {
+			int row = outOffset + y * outWidth;
+			// first input row of the block initializes, further rows accumulate
+			int src = inOffset + y * factor * width;
+			for (int x = 0; x < outWidth; x++) {
+				float v = in[src + x * factor];
+				for (int k = 1; k < factor; k++) {
+					v = combine(v, in[src + x * factor + k]);
+				}
+				out[row + x] = v;
+			}
+			for (int r = 1; r < factor; r++) {
+				src += width;
+				for (int x = 0; x < outWidth; x++) {
+					float v = out[row + x];
+					for (int k = 0; k < factor; k++) {
+						v = combine(v, in[src + x * factor + k]);
+					}
+					out[row + x] = v;
+				}
+			}
+			if (mode == AVERAGE) {
+				float scale = 1f / (factor * factor);
+				for (int x = 0; x < outWidth; x++) {
+					out[row + x] *= scale;
+				}
+			}
+		}
+	}
+
+	private float combine(float a, float b) {
+		return mode == AVERAGE ? a + b : Math.max(a, b);
+	}
+
+	private final int width;
+	private final int height;
+	private final int factor;
+	private final int mode;
+}
@@ -0,0 +1,137 @@
+package nnet.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Combines {@link Preprocessor}s and applies them to whole data sets.
+ */
+public final class Preprocessing {
+
+	private Preprocessing() {
+	}
+
+	/**
+	 * Returns a preprocessor applying first and then each of given in-place
+	 * stages, for example a {@link Pooling} followed by a
+	 * {@link Normalization}. All stages work on the output of the first one,
+	 * so no intermediate vectors are needed.
+	 */
+	public static Preprocessor chain(final Preprocessor first, final Preprocessor... inPlace) {
+		for (Preprocessor stage : inPlace) {
+			if (stage.inputSize() != first.outputSize() || stage.outputSize() != first.outputSize()) {
+				throw new IllegalArgumentException("Stage " + stage + " does not map " + first.outputSize()
+						+ " values in place");
+			}
+		}
+		final Preprocessor[] stages = inPlace.clone();
+		return new Preprocessor() {
+			public int inputSize() {
+				return first.inputSize();
+			}
+
+			public int outputSize() {
+				return first.outputSize();
+			}
+
+			public void apply(float[] in, int inOffset, float[] out, int outOffset) {
+				first.apply(in, inOffset, out, outOffset);
+				for (Preprocessor stage : stages) {
+					stage.apply(out, outOffset, out, outOffset);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Applies given preprocessor to all samples, in parallel on the common
+	 * fork/join pool, and returns the transformed samples.
+	 */
+	public static float[][] applyAll(Preprocessor preprocessor, float[][] samples) {
+		float[][] out = new float[samples.length][preprocessor.outputSize()];
+		ForkJoinPool.commonPool().invoke(new ApplyTask(preprocessor, samples, out, 0, samples.length));
+		return out;
+	}
+
+	/**
+	 * Applies given preprocessor to all samples and stores the result with one
+	 * byte per value, see {@link QuantizedSamples}.
+	 */
+	public static QuantizedSamples quantizeAll(Preprocessor preprocessor, float[][] samples, float[][] targets,
+			ByteQuantizer quantizer) {
+		QuantizedSamples quantized = new QuantizedSamples(samples.length, preprocessor.outputSize(), targets[0].length,
+				quantizer);
+		ForkJoinPool.commonPool().invoke(new QuantizeTask(preprocessor, samples, targets, quantized, 0, samples.length));
+		return quantized;
+	}
+
+	@SuppressWarnings("serial")
+	private static class ApplyTask extends RecursiveAction {
+
+		ApplyTask(Preprocessor preprocessor, float[][] in, float[][] out, int from, int to) {
+			this.preprocessor = preprocessor;
+			this.in = in;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				for (int i = from; i < to; i++) {
+					preprocessor.apply(in[i], 0, out[i], 0);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ApplyTask(preprocessor, in, out, from, mid), new ApplyTask(preprocessor, in, out, mid, to));
+		}
+
+		private final Preprocessor preprocessor;
+		private final float[][] in;
+		private final float[][] out;
+		private final int from;
+		private final int to;
+	}
+
+	@SuppressWarnings("serial")
+	private static class QuantizeTask extends RecursiveAction {
+
+		QuantizeTask(Preprocessor preprocessor, float[][] in, float[][] targets, QuantizedSamples out, int from, int to) {
+			this.preprocessor = preprocessor;
+			this.in = in;
+			this.targets = targets;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				float[] buffer = new float[preprocessor.outputSize()];
+				for (int i = from; i < to; i++) {
+					preprocessor.apply(in[i], 0, buffer, 0);
+					out.set(i, buffer, targets[i]);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new QuantizeTask(preprocessor, in, targets, out, from, mid),
+					new QuantizeTask(preprocessor, in, targets, out, mid, to));
+		}
+
+		private final Preprocessor preprocessor;
+		private final float[][] in;
+		private final float[][] targets;
+		private final QuantizedSamples out;
+		private final int from;
+		private final int to;
+	}
+
+	/**
+	 * Number of samples below which a task is not split any further.
+	 */
+	private static final int GRAIN = 256;
+}
@@ -0,0 +1,31 @@
+package nnet.data;
+
+/**
+ * Transforms a raw input vector into the input vector of a net, for example
+ * by downscaling or normalizing it.
+ * 
+ * Implementations are stateless, so one instance may be used by several
+ * threads at once, and write their result straight into a given target array
+ * at a given offset, such as the input layer activations of a net or a row of
+ * a batch, so no intermediate vector is needed.
+ */
+public interface Preprocessor {
+
+	/**
+	 * Returns the length of the raw input vectors.
+	 */
+	int inputSize();
+
+	/**
+	 * Returns the length of the transformed vectors.
+	 */
+	int outputSize();
+
+	/**
+	 * Transforms in[inOffset] to in[inOffset + inputSize() - 1] into
+	 * out[outOffset] to out[outOffset + outputSize() - 1]. Implementations with
+	 * equal input and output size also allow in and out to be the same array
+	 * at the same offset.
+	 */
+	void apply(float[] in, int inOffset, float[] out, int outOffset);
+}
@@ -0,0 +1,80 @@
+package nnet.data;
+
+/**
+ * An in-memory data set keeping inputs with one byte per value, a quarter of
+ * the memory of float vectors, and targets as floats. Serves as a
+ * {@link SampleSource}, decoding inputs straight into the arrays it is given.
+ */
+public class QuantizedSamples implements SampleSource {
+
+	public QuantizedSamples(int size, int inputSize, int targetSize, ByteQuantizer quantizer) {
+		this.size = size;
+		this.inputSize = inputSize;
+		this.targetSize = targetSize;
+		this.quantizer = quantizer;
+		this.inputs = new byte[size * inputSize];
+		this.targets = new float[size * targetSize];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int inputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int targetSize() {
+		return targetSize;
+	}
+
+	/**
+	 * Stores given sample at given index.
+	 */
+	public void set(int index, float[] input, float[] target) {
+		quantizer.encode(input, 0, inputs, index * inputSize, inputSize);
+		System.arraycopy(target, 0, targets, index * targetSize, targetSize);
+	}
+
+	/**
+	 * Decodes the input of the sample at given index into given array,
+	 * starting at given offset.
+	 */
+	public void getInput(int index, float[] out, int offset) {
+		quantizer.decode(inputs, index * inputSize, out, offset, inputSize);
+	}
+
+	public void getTarget(int index, float[] out) {
+		System.arraycopy(targets, index * targetSize, out, 0, targetSize);
+	}
+
+	@Override
+	public boolean next(float[] input, float[] target) {
+		if (position == size) {
+			return false;
+		}
+		getInput(position, input, 0);
+		getTarget(position, target);
+		position++;
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		position = 0;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private final int size;
+	private final int inputSize;
+	private final int targetSize;
+	private final ByteQuantizer quantizer;
+	private final byte[] inputs;
+	private final float[] targets;
+	private int position;
+}
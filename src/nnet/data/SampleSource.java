@@ -0,0 +1,27 @@
+package nnet.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A sequential reader of training samples, each consisting of an input vector
+ * and a target vector of fixed sizes. Implementations read from files in
+ * chunks and keep memory use independent of the number of samples.
+ */
+public interface SampleSource extends Closeable {
+
+	int inputSize();
+
+	int targetSize();
+
+	/**
+	 * Reads the next sample into given arrays. Returns false, leaving the
+	 * arrays untouched, if there are no more samples.
+	 */
+	boolean next(float[] input, float[] target) throws IOException;
+
+	/**
+	 * Rewinds to the first sample.
+	 */
+	void reset() throws IOException;
+}
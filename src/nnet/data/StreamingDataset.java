@@ -0,0 +1,218 @@
+package nnet.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Delivers the samples of a {@link SampleSource} in batches, epoch after
+ * epoch, for data sets that do not fit into memory.
+ * 
+ * A background thread reads ahead and assembles the next batches while the
+ * current one is being trained on. Samples are shuffled within a window of
+ * fixed size: the window is filled from the source, and each sample handed
+ * out is drawn at random from the window and replaced by the next one read.
+ * The larger the window, the closer this is to a full shuffle.
+ * 
+ * Memory use is constant: the shuffle window plus a fixed pool of batches,
+ * which are reused. A batch returned by {@link #next()} stays valid until the
+ * following call.
+ */
+public class StreamingDataset implements Closeable {
+
+	public StreamingDataset(SampleSource source, int batchSize, int shuffleWindow, long seed) {
+		this(source, batchSize, shuffleWindow, seed, 2);
+	}
+
+	/**
+	 * Creates a data set reading up to prefetch batches ahead. A shuffle window
+	 * of 1 keeps the order of the source.
+	 */
+	public StreamingDataset(SampleSource source, int batchSize, int shuffleWindow, long seed, int prefetch) {
+		this(source, null, batchSize, shuffleWindow, seed, prefetch);
+	}
+
+	/**
+	 * Creates a data set passing each input through given preprocessor on the
+	 * reader thread, as it is read from the source. The shuffle window and the
+	 * batches hold the preprocessed inputs only.
+	 */
+	public StreamingDataset(SampleSource source, Preprocessor preprocessor, int batchSize, int shuffleWindow, long seed,
+			int prefetch) {
+		if (batchSize < 1 || shuffleWindow < 1 || prefetch < 1) {
+			throw new IllegalArgumentException("Batch size, shuffle window and prefetch must be positive");
+		}
+		if (preprocessor != null && preprocessor.inputSize() != source.inputSize()) {
+			throw new IllegalArgumentException("Preprocessor expects " + preprocessor.inputSize() + " inputs, source has "
+					+ source.inputSize());
+		}
+		int inputSize = preprocessor == null ? source.inputSize() : preprocessor.outputSize();
+		this.source = source;
+		this.preprocessor = preprocessor;
+		this.raw = preprocessor == null ? null : new float[source.inputSize()];
+		this.random = new Random(seed);
+		this.windowInputs = new float[shuffleWindow][inputSize];
+		this.windowTargets = new float[shuffleWindow][source.targetSize()];
+
+		// one batch more than can be queued, for the batch handed out last
+		this.free = new ArrayBlockingQueue<Batch>(prefetch + 2);
+		this.filled = new ArrayBlockingQueue<Batch>(prefetch + 1);
+		for (int i = 0; i < prefetch + 2; i++) {
+			free.add(new Batch(batchSize, inputSize, source.targetSize()));
+		}
+
+		this.reader = new Thread(new Runnable() {
+			public void run() {
+				read();
+			}
+		}, "nnet-data-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Returns the next batch of the current epoch, or null once the epoch is
+	 * complete, after which the next call starts the next epoch. Blocks only if
+	 * the reader thread has not caught up.
+	 */
+	public Batch next() throws IOException {
+		if (current != null) {
+			free.add(current);
+			current = null;
+		}
+		long start = System.nanoTime();
+		Batch batch;
+		try {
+			batch = filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		waitNanos += System.nanoTime() - start;
+		if (batch == END_OF_EPOCH) {
+			return null;
+		}
+		if (batch == FAILED) {
+			// keep failing on further calls
+			filled.offer(FAILED);
+			throw new IOException("Reading samples failed", failure);
+		}
+		current = batch;
+		return batch;
+	}
+
+	/**
+	 * Returns the time spent so far waiting in {@link #next()} for the reader
+	 * thread, in nanoseconds. Close to zero if reading keeps up with training.
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * Stops the reader thread and closes the source.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		reader.interrupt();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		source.close();
+	}
+
+	private void read() {
+		try {
+			while (!closed) {
+				readEpoch();
+				filled.put(END_OF_EPOCH);
+				source.reset();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} catch (Exception e) {
+			if (!closed) {
+				failure = e;
+				try {
+					filled.put(FAILED);
+				} catch (InterruptedException closing) {
+					// closed
+				}
+			}
+		}
+	}
+
+	private void readEpoch() throws IOException, InterruptedException {
+		int fill = 0;
+		while (fill < windowInputs.length && read(windowInputs[fill], windowTargets[fill])) {
+			fill++;
+		}
+
+		Batch batch = free.take();
+		batch.size = 0;
+		while (fill > 0) {
+			int k = random.nextInt(fill);
+			System.arraycopy(windowInputs[k], 0, batch.inputs[batch.size], 0, windowInputs[k].length);
+			System.arraycopy(windowTargets[k], 0, batch.targets[batch.size], 0, windowTargets[k].length);
+			batch.size++;
+			if (!read(windowInputs[k], windowTargets[k])) {
+				// source exhausted, drain the window by moving the last sample into the gap
+				fill--;
+				float[] input = windowInputs[k];
+				windowInputs[k] = windowInputs[fill];
+				windowInputs[fill] = input;
+				float[] target = windowTargets[k];
+				windowTargets[k] = windowTargets[fill];
+				windowTargets[fill] = target;
+			}
+			if (batch.size == batch.inputs.length) {
+				filled.put(batch);
+				batch = free.take();
+				batch.size = 0;
+			}
+		}
+		if (batch.size > 0) {
+			filled.put(batch);
+		} else {
+			free.add(batch);
+		}
+	}
+
+	/**
+	 * Reads the next sample from the source, preprocessing its input if
+	 * required.
+	 */
+	private boolean read(float[] input, float[] target) throws IOException {
+		if (preprocessor == null) {
+			return source.next(input, target);
+		}
+		if (!source.next(raw, target)) {
+			return false;
+		}
+		preprocessor.apply(raw, 0, input, 0);
+		return true;
+	}
+
+	private static final Batch END_OF_EPOCH = new Batch(0, 0, 0);
+	private static final Batch FAILED = new Batch(0, 0, 0);
+
+	private final SampleSource source;
+	private final Preprocessor preprocessor;
+	private final float[] raw;
+	private final Random random;
+	private final float[][] windowInputs;
+	private final float[][] windowTargets;
+	private final BlockingQueue<Batch> free;
+	private final BlockingQueue<Batch> filled;
+	private final Thread reader;
+	private volatile boolean closed;
+	private volatile Exception failure;
+	private Batch current;
+	private long waitNanos;
+}
@@ -0,0 +1,73 @@
+package nnet.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one line per completed epoch to a CSV file: epoch, samples, error,
+ * mean error, samples per second, forward, backward and update time in
+ * milliseconds, and the update magnitude of each layer. Sampled batches are
+ * written too if requested, marked by an epoch column prefixed with '~'.
+ * 
+ * Lines are flushed at the end of each epoch, so the file can be watched
+ * while training runs.
+ */
+public class CsvMetricsWriter implements TrainingListener, Closeable {
+
+	public CsvMetricsWriter(Path file, int layerPairs, boolean writeSampledBatches) throws IOException {
+		this.writer = Files.newBufferedWriter(file, Charset.forName("UTF-8"));
+		this.writeSampledBatches = writeSampledBatches;
+		StringBuilder header = new StringBuilder(
+				"epoch,samples,error,mean_error,samples_per_second,forward_ms,backward_ms,update_ms");
+		for (int l = 0; l < layerPairs; l++) {
+			header.append(",update_magnitude_").append(l);
+		}
+		writer.write(header.toString());
+		writer.newLine();
+	}
+
+	@Override
+	public void batchSampled(EpochMetrics current) {
+		if (writeSampledBatches) {
+			write("~", current, false);
+		}
+	}
+
+	@Override
+	public void epochCompleted(EpochMetrics epoch) {
+		write("", epoch, true);
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void write(String prefix, EpochMetrics m, boolean flush) {
+		StringBuilder line = new StringBuilder();
+		line.append(prefix).append(m.getEpoch()).append(',').append(m.getSamples()).append(',').append(m.getError())
+				.append(',').append(m.getMeanError()).append(',').append(Math.round(m.samplesPerSecond())).append(',')
+				.append(m.getForwardNanos() / 1e6).append(',').append(m.getBackwardNanos() / 1e6).append(',')
+				.append(m.getUpdateNanos() / 1e6);
+		for (int l = 0; l < m.layerPairs(); l++) {
+			line.append(',').append(m.getUpdateMagnitude(l));
+		}
+		try {
+			writer.write(line.toString());
+			writer.newLine();
+			if (flush) {
+				writer.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private final BufferedWriter writer;
+	private final boolean writeSampledBatches;
+}
@@ -0,0 +1,107 @@
+package nnet.metrics;
+
+/**
+ * An immutable snapshot of the metrics of one training epoch, or of the part
+ * of an epoch trained so far.
+ */
+public final class EpochMetrics {
+
+	EpochMetrics(int epoch, long samples, long batches, double error, long elapsedNanos, long forwardNanos,
+			long backwardNanos, long updateNanos, float[] updateMagnitudes) {
+		this.epoch = epoch;
+		this.samples = samples;
+		this.batches = batches;
+		this.error = error;
+		this.elapsedNanos = elapsedNanos;
+		this.forwardNanos = forwardNanos;
+		this.backwardNanos = backwardNanos;
+		this.updateNanos = updateNanos;
+		this.updateMagnitudes = updateMagnitudes;
+	}
+
+	/**
+	 * Returns the number of the epoch, counting from 1.
+	 */
+	public int getEpoch() {
+		return epoch;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Returns the total error, the sum over all samples of the mean squared
+	 * output error.
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the mean error per sample.
+	 */
+	public double getMeanError() {
+		return samples == 0 ? 0 : error / samples;
+	}
+
+	/**
+	 * Returns the wall clock time since the epoch started.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getForwardNanos() {
+		return forwardNanos;
+	}
+
+	public long getBackwardNanos() {
+		return backwardNanos;
+	}
+
+	public long getUpdateNanos() {
+		return updateNanos;
+	}
+
+	public double samplesPerSecond() {
+		return elapsedNanos == 0 ? 0 : samples * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Returns the root mean square of the weight changes of given layer's
+	 * weights (to the next layer) per update, averaged over the sampled
+	 * batches, or NaN if no batch was sampled.
+	 */
+	public float getUpdateMagnitude(int layer) {
+		return updateMagnitudes[layer];
+	}
+
+	public int layerPairs() {
+		return updateMagnitudes.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("epoch ").append(epoch).append(": ").append(samples).append(" samples, error ").append((float) error)
+				.append(", ").append(Math.round(samplesPerSecond())).append(" samples/s, forward ")
+				.append(forwardNanos / 1000000).append(" ms, backward ").append(backwardNanos / 1000000)
+				.append(" ms, update ").append(updateNanos / 1000000).append(" ms");
+		return sb.toString();
+	}
+
+	private final int epoch;
+	private final long samples;
+	private final long batches;
+	private final double error;
+	private final long elapsedNanos;
+	private final long forwardNanos;
+	private final long backwardNanos;
+	private final long updateNanos;
+	private final float[] updateMagnitudes;
+}
@@ -0,0 +1,117 @@
+package nnet.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the latencies, call rate and allocation rate of an
+ * {@link InstrumentedInference} as an MBean, so that served nets can be
+ * watched with JConsole or any other JMX client.
+ */
+public class InferenceMonitor implements InferenceMonitorMBean {
+
+	/**
+	 * Registers a new monitor for given instrumented net with the platform
+	 * MBean server under nnet:type=Inference,name=given name.
+	 */
+	public static InferenceMonitor register(String name, InstrumentedInference inference) throws JMException {
+		InferenceMonitor monitor = new InferenceMonitor(
+				new ObjectName("nnet:type=Inference,name=" + ObjectName.quote(name)), inference);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, monitor.objectName);
+		return monitor;
+	}
+
+	private InferenceMonitor(ObjectName objectName, InstrumentedInference inference) {
+		this.objectName = objectName;
+		this.inference = inference;
+		this.lastRateNanos = System.nanoTime();
+	}
+
+	/**
+	 * Removes this monitor from the platform MBean server.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return inference.isEnabled();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		inference.setEnabled(enabled);
+	}
+
+	@Override
+	public long getCalls() {
+		return inference.getLatencies().count();
+	}
+
+	/**
+	 * Returns the calls per second since this attribute was last read, or
+	 * since the monitor was registered.
+	 */
+	@Override
+	public synchronized double getCallsPerSecond() {
+		long now = System.nanoTime();
+		long calls = inference.getLatencies().count();
+		double rate = now == lastRateNanos ? 0 : Math.max(0, calls - lastRateCalls) * 1e9 / (now - lastRateNanos);
+		lastRateNanos = now;
+		lastRateCalls = calls;
+		return rate;
+	}
+
+	@Override
+	public double getMeanMicros() {
+		return inference.getLatencies().mean() / 1000;
+	}
+
+	@Override
+	public double getP50Micros() {
+		return inference.getLatencies().percentile(0.5) / 1000.0;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return inference.getLatencies().percentile(0.99) / 1000.0;
+	}
+
+	@Override
+	public double getP999Micros() {
+		return inference.getLatencies().percentile(0.999) / 1000.0;
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return inference.getLatencies().max() / 1000.0;
+	}
+
+	@Override
+	public double getAllocatedBytesPerCall() {
+		return inference.allocatedBytesPerCall();
+	}
+
+	@Override
+	public synchronized void reset() {
+		inference.reset();
+		lastRateNanos = System.nanoTime();
+		lastRateCalls = 0;
+	}
+
+	private final ObjectName objectName;
+	private final InstrumentedInference inference;
+	private long lastRateNanos;
+	private long lastRateCalls;
+}
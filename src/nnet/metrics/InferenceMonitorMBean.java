@@ -0,0 +1,30 @@
+package nnet.metrics;
+
+/**
+ * Management interface of {@link InferenceMonitor}. Latencies are in
+ * microseconds.
+ */
+public interface InferenceMonitorMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getCalls();
+
+	double getCallsPerSecond();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	double getAllocatedBytesPerCall();
+
+	void reset();
+}
@@ -0,0 +1,184 @@
+package nnet.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import nnet.InferenceContext;
+import nnet.LayeredNet;
+import nnet.data.Preprocessor;
+
+/**
+ * Wraps the inference methods of a {@link LayeredNet} and records the latency
+ * of every call into a {@link LatencyHistogram}. About one call in 1024 also
+ * measures the bytes the calling thread allocates.
+ * 
+ * Nets that are not wrapped are not affected at all. A wrapper can be
+ * disabled at runtime, after which it calls straight through to the net at
+ * the cost of reading one field.
+ * 
+ * Calls are as thread-safe as those of the wrapped net, i.e. the context
+ * variants may be called by several threads at once.
+ */
+public class InstrumentedInference {
+
+	public InstrumentedInference(LayeredNet net) {
+		this.net = net;
+		this.allocationBaseline = calibrateAllocation();
+	}
+
+	public LayeredNet getNet() {
+		return net;
+	}
+
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * See {@link LayeredNet#output(float[])}.
+	 */
+	public float[] output(float[] input) {
+		if (!enabled) {
+			return net.output(input);
+		}
+		long allocated = startAllocation();
+		long start = System.nanoTime();
+		float[] out = net.output(input);
+		latencies.record(System.nanoTime() - start);
+		finishAllocation(allocated);
+		return out;
+	}
+
+	/**
+	 * See {@link LayeredNet#output(float[], float[])}.
+	 */
+	public float[] output(float[] input, float[] out) {
+		if (!enabled) {
+			return net.output(input, out);
+		}
+		long allocated = startAllocation();
+		long start = System.nanoTime();
+		net.output(input, out);
+		latencies.record(System.nanoTime() - start);
+		finishAllocation(allocated);
+		return out;
+	}
+
+	/**
+	 * See {@link LayeredNet#output(InferenceContext, float[], float[])}.
+	 */
+	public float[] output(InferenceContext context, float[] input, float[] out) {
+		if (!enabled) {
+			return net.output(context, input, out);
+		}
+		long allocated = startAllocation();
+		long start = System.nanoTime();
+		net.output(context, input, out);
+		latencies.record(System.nanoTime() - start);
+		finishAllocation(allocated);
+		return out;
+	}
+
+	/**
+	 * See {@link LayeredNet#output(InferenceContext, Preprocessor, float[], float[])}.
+	 */
+	public float[] output(InferenceContext context, Preprocessor preprocessor, float[] rawInput, float[] out) {
+		if (!enabled) {
+			return net.output(context, preprocessor, rawInput, out);
+		}
+		long allocated = startAllocation();
+		long start = System.nanoTime();
+		net.output(context, preprocessor, rawInput, out);
+		latencies.record(System.nanoTime() - start);
+		finishAllocation(allocated);
+		return out;
+	}
+
+	/**
+	 * Returns the mean number of bytes allocated per call, estimated from the
+	 * sampled calls, or NaN if no call was sampled yet or the JVM cannot
+	 * measure allocations.
+	 */
+	public double allocatedBytesPerCall() {
+		long samples = allocationSamples.sum();
+		return samples == 0 ? Double.NaN : Math.max(0, (double) allocatedBytes.sum() / samples);
+	}
+
+	/**
+	 * Clears the latencies and allocation samples recorded so far.
+	 */
+	public void reset() {
+		latencies.reset();
+		allocatedBytes.reset();
+		allocationSamples.reset();
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread so far if this call is
+	 * sampled, or -1.
+	 */
+	private long startAllocation() {
+		if (THREADS == null || (ThreadLocalRandom.current().nextInt() & (ALLOCATION_SAMPLE_INTERVAL - 1)) != 0) {
+			return -1;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private void finishAllocation(long before) {
+		if (before >= 0) {
+			allocatedBytes.add(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - before
+					- allocationBaseline);
+			allocationSamples.increment();
+		}
+	}
+
+	/**
+	 * Returns the bytes reading the allocation counter allocates itself.
+	 */
+	private static long calibrateAllocation() {
+		if (THREADS == null) {
+			return 0;
+		}
+		long thread = Thread.currentThread().getId();
+		long baseline = Long.MAX_VALUE;
+		for (int i = 0; i < 16; i++) {
+			long before = THREADS.getThreadAllocatedBytes(thread);
+			baseline = Math.min(baseline, THREADS.getThreadAllocatedBytes(thread) - before);
+		}
+		return baseline;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		try {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads;
+			}
+		} catch (RuntimeException e) {
+			// not a HotSpot JVM, e.g. ClassCastException
+		} catch (LinkageError e) {
+			// com.sun.management not available
+		}
+		return null;
+	}
+
+	private static final int ALLOCATION_SAMPLE_INTERVAL = 1024;
+	private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+	private final LayeredNet net;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final LongAdder allocatedBytes = new LongAdder();
+	private final LongAdder allocationSamples = new LongAdder();
+	private final long allocationBaseline;
+	private volatile boolean enabled = true;
+}
@@ -0,0 +1,153 @@
+package nnet.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with a relative precision
+ * of better than 1%, in the manner of an HDR histogram.
+ * 
+ * Values below 256 ns get a bucket each. Above, each power of two is divided
+ * into 128 buckets of equal width, so a bucket is at most 1/128 of its lowest
+ * value wide, up to about 18 minutes; longer durations
+ * are counted as that maximum. A value is recorded by a single atomic
+ * increment in one of several stripes, picked by the recording thread, so
+ * threads recording at the same time rarely touch the same cache lines.
+ * Queries add up all stripes.
+ */
+public class LatencyHistogram {
+
+	public LatencyHistogram() {
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+		this.stripes = new AtomicLongArray[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new AtomicLongArray(BUCKETS + 1);
+		}
+	}
+
+	/**
+	 * Records given duration in nanoseconds. Negative durations count as 0.
+	 */
+	public void record(long nanos) {
+		AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+		long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+		stripe.getAndIncrement(bucket(value));
+		stripe.getAndAdd(BUCKETS, value);
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 */
+	public long count() {
+		long count = 0;
+		long[] counts = counts();
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the mean of the recorded values, or 0 if there are none.
+	 */
+	public double mean() {
+		long[] counts = counts();
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts[i];
+		}
+		return count == 0 ? 0 : (double) counts[BUCKETS] / count;
+	}
+
+	/**
+	 * Returns the value below or at which given fraction (0 to 1) of the
+	 * recorded values lie, as the highest value of its bucket, or 0 if
+	 * there are no values.
+	 */
+	public long percentile(double fraction) {
+		long[] counts = counts();
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return highestValue(i);
+			}
+		}
+		return MAX_VALUE;
+	}
+
+	/**
+	 * Returns the highest recorded value, to the precision of the buckets, or
+	 * 0 if there are no values.
+	 */
+	public long max() {
+		long[] counts = counts();
+		for (int i = BUCKETS - 1; i >= 0; i--) {
+			if (counts[i] != 0) {
+				return highestValue(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Clears all recorded values. Values recorded concurrently may or may not
+	 * survive.
+	 */
+	public void reset() {
+		for (AtomicLongArray stripe : stripes) {
+			for (int i = 0; i <= BUCKETS; i++) {
+				stripe.set(i, 0);
+			}
+		}
+	}
+
+	/**
+	 * Returns the bucket counts of all stripes added up, followed by the sum of
+	 * all values.
+	 */
+	private long[] counts() {
+		long[] counts = new long[BUCKETS + 1];
+		for (AtomicLongArray stripe : stripes) {
+			for (int i = 0; i <= BUCKETS; i++) {
+				counts[i] += stripe.get(i);
+			}
+		}
+		return counts;
+	}
+
+	static int bucket(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+		return shift * HALF + (int) (value >>> shift);
+	}
+
+	static long lowestValue(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int shift = bucket / HALF - 1;
+		return (long) (bucket - shift * HALF) << shift;
+	}
+
+	static long highestValue(int bucket) {
+		return bucket == BUCKETS - 1 ? MAX_VALUE : lowestValue(bucket + 1) - 1;
+	}
+
+	private static final int SUB_BITS = 8;
+	private static final int LINEAR = 1 << SUB_BITS;
+	private static final int HALF = LINEAR / 2;
+	private static final long MAX_VALUE = (1L << 40) - 1;
+	private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+	private final AtomicLongArray[] stripes;
+}
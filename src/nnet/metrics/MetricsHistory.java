@@ -0,0 +1,30 @@
+package nnet.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the metrics of all completed epochs in memory, for example to plot
+ * the error curve after training.
+ */
+public class MetricsHistory implements TrainingListener {
+
+	@Override
+	public void batchSampled(EpochMetrics current) {
+	}
+
+	@Override
+	public synchronized void epochCompleted(EpochMetrics epoch) {
+		epochs.add(epoch);
+	}
+
+	/**
+	 * Returns the metrics of all completed epochs so far, in order.
+	 */
+	public synchronized List<EpochMetrics> getEpochs() {
+		return Collections.unmodifiableList(new ArrayList<EpochMetrics>(epochs));
+	}
+
+	private final List<EpochMetrics> epochs = new ArrayList<EpochMetrics>();
+}
@@ -0,0 +1,163 @@
+package nnet.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the metrics of a training loop epoch by epoch and passes them on
+ * to {@link TrainingListener}s.
+ * 
+ * Recording a batch only adds to a few counters. The more expensive parts,
+ * measuring the weight update magnitudes and notifying listeners of progress
+ * within an epoch, happen for every n-th batch only, where n is the sample
+ * interval. Trainers ask {@link #isSampling()} before each batch.
+ * 
+ * A recorder is meant to be driven by one training thread; listeners are
+ * called on that thread.
+ */
+public class MetricsRecorder {
+
+	public MetricsRecorder(int layerPairs) {
+		this.magnitudeSums = new double[layerPairs];
+	}
+
+	public void addListener(TrainingListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(TrainingListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the number of batches between two sampled ones. Defaults to 16.
+	 */
+	public void setSampleInterval(int batches) {
+		if (batches < 1) {
+			throw new IllegalArgumentException("Sample interval must be positive: " + batches);
+		}
+		this.sampleInterval = batches;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Returns whether the next batch is sampled, i.e. whether its update
+	 * magnitudes are to be recorded.
+	 */
+	public boolean isSampling() {
+		return (batches + 1) % sampleInterval == 0;
+	}
+
+	/**
+	 * Starts a new epoch. Called implicitly by the first batch recorded after
+	 * an epoch was finished.
+	 */
+	public void startEpoch() {
+		epoch++;
+		running = true;
+		startNanos = System.nanoTime();
+		samples = 0;
+		batches = 0;
+		sampledBatches = 0;
+		error = 0;
+		forwardNanos = 0;
+		backwardNanos = 0;
+		updateNanos = 0;
+		Arrays.fill(magnitudeSums, 0);
+	}
+
+	/**
+	 * Records the root mean square weight change of given layer's weights for
+	 * the current batch, if it is sampled.
+	 */
+	public void recordUpdateMagnitude(int layer, double rms) {
+		if (!running) {
+			startEpoch();
+		}
+		magnitudeSums[layer] += rms;
+	}
+
+	/**
+	 * Records a trained batch of given number of samples and total error, and
+	 * the time spent in its phases.
+	 */
+	public void recordBatch(int samples, double error, long forwardNanos, long backwardNanos, long updateNanos) {
+		if (!running) {
+			startEpoch();
+		}
+		boolean sampled = isSampling();
+		this.samples += samples;
+		this.batches++;
+		this.error += error;
+		this.forwardNanos += forwardNanos;
+		this.backwardNanos += backwardNanos;
+		this.updateNanos += updateNanos;
+		if (sampled) {
+			sampledBatches++;
+			if (!listeners.isEmpty()) {
+				EpochMetrics current = current();
+				for (TrainingListener listener : listeners) {
+					listener.batchSampled(current);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finishes the current epoch, notifies the listeners and returns its
+	 * metrics.
+	 */
+	public EpochMetrics finishEpoch() {
+		if (!running) {
+			startEpoch();
+		}
+		EpochMetrics metrics = current();
+		running = false;
+		last = metrics;
+		for (TrainingListener listener : listeners) {
+			listener.epochCompleted(metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Returns the metrics of the current epoch so far, or of the last epoch
+	 * if none is running.
+	 */
+	public EpochMetrics current() {
+		if (!running) {
+			return last;
+		}
+		float[] magnitudes = new float[magnitudeSums.length];
+		for (int l = 0; l < magnitudes.length; l++) {
+			magnitudes[l] = sampledBatches == 0 ? Float.NaN : (float) (magnitudeSums[l] / sampledBatches);
+		}
+		return new EpochMetrics(epoch, samples, batches, error, System.nanoTime() - startNanos, forwardNanos,
+				backwardNanos, updateNanos, magnitudes);
+	}
+
+	/**
+	 * Returns the metrics of the last finished epoch, or null.
+	 */
+	public EpochMetrics last() {
+		return last;
+	}
+
+	private final CopyOnWriteArrayList<TrainingListener> listeners = new CopyOnWriteArrayList<TrainingListener>();
+	private final double[] magnitudeSums;
+	private int sampleInterval = 16;
+	private int epoch;
+	private boolean running;
+	private long startNanos;
+	private long samples;
+	private long batches;
+	private long sampledBatches;
+	private double error;
+	private long forwardNanos;
+	private long backwardNanos;
+	private long updateNanos;
+	private volatile EpochMetrics last;
+}
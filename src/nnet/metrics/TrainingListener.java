@@ -0,0 +1,18 @@
+package nnet.metrics;
+
+/**
+ * Receives training metrics from a {@link MetricsRecorder}.
+ */
+public interface TrainingListener {
+
+	/**
+	 * Called after every n-th batch, where n is the sample interval of the
+	 * recorder, with the metrics of the epoch so far.
+	 */
+	void batchSampled(EpochMetrics current);
+
+	/**
+	 * Called once at the end of every epoch.
+	 */
+	void epochCompleted(EpochMetrics epoch);
+}
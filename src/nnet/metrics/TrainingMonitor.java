@@ -0,0 +1,125 @@
+package nnet.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the latest training metrics as an MBean, so that long training
+ * runs can be watched with JConsole or any other JMX client. The attributes
+ * are updated on each sampled batch and at the end of each epoch.
+ */
+public class TrainingMonitor implements TrainingListener, TrainingMonitorMBean {
+
+	/**
+	 * Registers a new monitor with the platform MBean server under
+	 * nnet:type=Training,name=given name.
+	 */
+	public static TrainingMonitor register(String name) throws JMException {
+		TrainingMonitor monitor = new TrainingMonitor(new ObjectName("nnet:type=Training,name=" + ObjectName.quote(name)));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, monitor.objectName);
+		return monitor;
+	}
+
+	private TrainingMonitor(ObjectName objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Removes this monitor from the platform MBean server.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public void batchSampled(EpochMetrics current) {
+		this.current = current;
+	}
+
+	@Override
+	public void epochCompleted(EpochMetrics epoch) {
+		this.current = epoch;
+		this.last = epoch;
+	}
+
+	@Override
+	public int getEpoch() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.getEpoch();
+	}
+
+	@Override
+	public long getSamples() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.getSamples();
+	}
+
+	@Override
+	public double getMeanError() {
+		EpochMetrics m = current;
+		return m == null ? Double.NaN : m.getMeanError();
+	}
+
+	@Override
+	public double getSamplesPerSecond() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.samplesPerSecond();
+	}
+
+	@Override
+	public long getForwardMillis() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.getForwardNanos() / 1000000;
+	}
+
+	@Override
+	public long getBackwardMillis() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.getBackwardNanos() / 1000000;
+	}
+
+	@Override
+	public long getUpdateMillis() {
+		EpochMetrics m = current;
+		return m == null ? 0 : m.getUpdateNanos() / 1000000;
+	}
+
+	@Override
+	public float[] getUpdateMagnitudes() {
+		EpochMetrics m = current;
+		if (m == null) {
+			return new float[0];
+		}
+		float[] magnitudes = new float[m.layerPairs()];
+		for (int l = 0; l < magnitudes.length; l++) {
+			magnitudes[l] = m.getUpdateMagnitude(l);
+		}
+		return magnitudes;
+	}
+
+	@Override
+	public double getLastEpochMeanError() {
+		EpochMetrics m = last;
+		return m == null ? Double.NaN : m.getMeanError();
+	}
+
+	@Override
+	public double getLastEpochSamplesPerSecond() {
+		EpochMetrics m = last;
+		return m == null ? 0 : m.samplesPerSecond();
+	}
+
+	private final ObjectName objectName;
+	private volatile EpochMetrics current;
+	private volatile EpochMetrics last;
+}
@@ -0,0 +1,27 @@
+package nnet.metrics;
+
+/**
+ * Management interface of {@link TrainingMonitor}.
+ */
+public interface TrainingMonitorMBean {
+
+	int getEpoch();
+
+	long getSamples();
+
+	double getMeanError();
+
+	double getSamplesPerSecond();
+
+	long getForwardMillis();
+
+	long getBackwardMillis();
+
+	long getUpdateMillis();
+
+	float[] getUpdateMagnitudes();
+
+	double getLastEpochMeanError();
+
+	double getLastEpochSamplesPerSecond();
+}
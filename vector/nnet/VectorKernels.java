@@ -0,0 +1,51 @@
+package nnet;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dot products and axpy on the incubating Vector API of Java 16 and later,
+ * using the widest SIMD registers the CPU offers. Compiled separately and
+ * loaded by {@link Kernels} through reflection, so that the library still runs
+ * on Java 8, and on later JVMs started without
+ * --add-modules jdk.incubator.vector.
+ *
+ * Products and sums are rounded separately, without fused multiply-add, so
+ * that axpy gives bit-identical results to the scalar loop.
+ */
+final class VectorKernels implements Kernels.Primitives {
+
+	@Override
+	public float dot(float[] a, int aOff, float[] b, int bOff, int n) {
+		FloatVector sums = FloatVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(n);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector va = FloatVector.fromArray(SPECIES, a, aOff + i);
+			FloatVector vb = FloatVector.fromArray(SPECIES, b, bOff + i);
+			sums = sums.add(va.mul(vb));
+		}
+		float sum = sums.reduceLanes(VectorOperators.ADD);
+		for (; i < n; i++) {
+			sum += a[aOff + i] * b[bOff + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n) {
+		int bound = SPECIES.loopBound(n);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector vx = FloatVector.fromArray(SPECIES, x, xOff + i);
+			FloatVector vy = FloatVector.fromArray(SPECIES, y, yOff + i);
+			vy.add(vx.mul(alpha)).intoArray(y, yOff + i);
+		}
+		for (; i < n; i++) {
+			y[yOff + i] += alpha * x[xOff + i];
+		}
+	}
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+}